@@ -1,11 +1,13 @@
 package com.aiquiztool;
 
+import com.aiquiztool.batch.BatchRunner;
 import com.aiquiztool.ui.SystemTrayManager;
 import com.formdev.flatlaf.FlatLightLaf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.util.Arrays;
 
 /**
  * AI助手工具主程序
@@ -22,6 +24,11 @@ public class AIQuizToolApplication {
         System.setProperty("user.language", "zh");
         System.setProperty("user.country", "CN");
         
+        // 批量答题模式不启动界面
+        if (Arrays.asList(args).contains("--batch")) {
+            System.exit(BatchRunner.run(args));
+        }
+        
         try {
             UIManager.setLookAndFeel(new FlatLightLaf());
         } catch (Exception e) {
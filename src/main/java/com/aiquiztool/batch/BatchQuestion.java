@@ -0,0 +1,27 @@
+package com.aiquiztool.batch;
+
+/**
+ * 批量答题中的一道题
+ * @author Tang En Dong
+ */
+public class BatchQuestion {
+    
+    private final String id;
+    private final String question;
+    
+    public BatchQuestion(String id, String question) {
+        this.id = id;
+        this.question = question;
+    }
+    
+    /**
+     * 题目编号，输入中没有时使用行号，用于断点续跑时识别已回答的题目
+     */
+    public String getId() {
+        return id;
+    }
+    
+    public String getQuestion() {
+        return question;
+    }
+}
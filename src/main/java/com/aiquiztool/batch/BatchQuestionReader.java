@@ -0,0 +1,157 @@
+package com.aiquiztool.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读取批量答题的题目文件
+ * JSONL：每行一个对象，包含question字段，可选id字段
+ * CSV：首行为表头时按id、question列读取；没有表头时，一列为题目，两列为编号和题目
+ * @author Tang En Dong
+ */
+public class BatchQuestionReader {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    public List<BatchQuestion> read(File file) throws Exception {
+        if (!file.isFile()) {
+            throw new Exception("题目文件不存在: " + file.getPath());
+        }
+        if (file.getName().toLowerCase().endsWith(".csv")) {
+            return readCsv(file);
+        }
+        return readJsonLines(file);
+    }
+    
+    private List<BatchQuestion> readJsonLines(File file) throws Exception {
+        List<BatchQuestion> questions = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    throw new Exception("第" + lineNumber + "行不是有效的JSON: " + e.getMessage());
+                }
+                String question = node.path("question").asText("");
+                if (question.trim().isEmpty()) {
+                    throw new Exception("第" + lineNumber + "行缺少question字段");
+                }
+                String id = node.hasNonNull("id") ? node.get("id").asText() : String.valueOf(lineNumber);
+                questions.add(new BatchQuestion(id, question));
+            }
+        }
+        return questions;
+    }
+    
+    private List<BatchQuestion> readCsv(File file) throws Exception {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        if (content.startsWith("\uFEFF")) {
+            content = content.substring(1);
+        }
+        List<List<String>> rows = parseCsv(content);
+        
+        int idColumn = -1;
+        int questionColumn = -1;
+        int firstRow = 0;
+        if (!rows.isEmpty()) {
+            List<String> header = rows.get(0);
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).trim().toLowerCase();
+                if ("id".equals(name)) {
+                    idColumn = i;
+                } else if ("question".equals(name)) {
+                    questionColumn = i;
+                }
+            }
+            if (questionColumn >= 0) {
+                firstRow = 1;
+            }
+        }
+        
+        List<BatchQuestion> questions = new ArrayList<>();
+        for (int r = firstRow; r < rows.size(); r++) {
+            List<String> row = rows.get(r);
+            String id;
+            String question;
+            if (questionColumn >= 0) {
+                question = questionColumn < row.size() ? row.get(questionColumn) : "";
+                id = idColumn >= 0 && idColumn < row.size() ? row.get(idColumn) : String.valueOf(r);
+            } else if (row.size() >= 2) {
+                id = row.get(0);
+                question = row.get(1);
+            } else {
+                id = String.valueOf(r + 1);
+                question = row.isEmpty() ? "" : row.get(0);
+            }
+            if (!question.trim().isEmpty()) {
+                questions.add(new BatchQuestion(id.trim(), question));
+            }
+        }
+        return questions;
+    }
+    
+    /**
+     * 按RFC 4180解析CSV，支持引号内的逗号、换行和转义引号
+     */
+    private List<List<String>> parseCsv(String content) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < content.length() && content.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < content.length() && content.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                row.add(field.toString());
+                field.setLength(0);
+                if (row.size() > 1 || !row.get(0).isEmpty()) {
+                    rows.add(row);
+                }
+                row = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+        
+        row.add(field.toString());
+        if (row.size() > 1 || !row.get(0).isEmpty()) {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
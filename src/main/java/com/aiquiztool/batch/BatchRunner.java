@@ -0,0 +1,251 @@
+package com.aiquiztool.batch;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.AIService;
+import com.aiquiztool.service.Deadline;
+import com.aiquiztool.service.HttpClientManager;
+import com.aiquiztool.service.RequestOptions;
+import com.aiquiztool.service.provider.AIProvider;
+import com.aiquiztool.service.provider.ProviderRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * 无界面批量答题
+ * 从JSONL或CSV读取题目，按配置的并发数通过AIService回答，每完成一题立即追加到结果JSONL；
+ * 结果文件同时作为断点，重新运行时跳过已成功回答的题目，失败的题目会重新回答
+ * @author Tang En Dong
+ */
+public class BatchRunner {
+    private static final Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+    
+    private final AIService aiService;
+    private final int concurrency;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    public BatchRunner(AIService aiService, int concurrency) {
+        this.aiService = aiService;
+        this.concurrency = Math.max(concurrency, 1);
+    }
+    
+    /**
+     * 命令行入口：--batch 题目文件 [--output 结果文件] [--concurrency 并发数]
+     * 返回进程退出码：0全部成功，1参数或文件错误，2部分题目失败
+     */
+    public static int run(String[] args) {
+        File input = null;
+        File output = null;
+        int concurrency = ConfigManager.getInstance().getBatchConcurrency();
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--batch".equals(arg) && i + 1 < args.length) {
+                input = new File(args[++i]);
+            } else if ("--output".equals(arg) && i + 1 < args.length) {
+                output = new File(args[++i]);
+            } else if ("--concurrency".equals(arg) && i + 1 < args.length) {
+                try {
+                    concurrency = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("并发数必须是整数: " + args[i]);
+                    return 1;
+                }
+            }
+        }
+        
+        if (input == null) {
+            System.err.println("用法: --batch 题目文件(.jsonl/.csv) [--output 结果文件.jsonl] [--concurrency 并发数]");
+            return 1;
+        }
+        if (output == null) {
+            String name = input.getName();
+            int dot = name.lastIndexOf('.');
+            output = new File(input.getAbsoluteFile().getParentFile(),
+                (dot > 0 ? name.substring(0, dot) : name) + ".answers.jsonl");
+        }
+        
+        int limit = maxConcurrency();
+        if (concurrency > limit) {
+            System.err.printf("并发数%d超过HTTP连接的并发上限，改为%d%n", concurrency, limit);
+            logger.warn("并发数{}超过HTTP连接的并发上限（http.max-requests-per-host × 地址数），改为{}", concurrency, limit);
+            concurrency = limit;
+        }
+        
+        AIService aiService = new AIService();
+        try {
+            BatchStats stats = new BatchRunner(aiService, concurrency).run(input, output);
+            return stats.getFailed() > 0 ? 2 : 0;
+        } catch (Exception e) {
+            logger.error("批量答题失败", e);
+            System.err.println("批量答题失败: " + e.getMessage());
+            return 1;
+        } finally {
+            aiService.cleanup();
+            HttpClientManager.getInstance().shutdown();
+        }
+    }
+    
+    /**
+     * 同时进行的请求数上限：每个地址最多http.max-requests-per-host个，总数最多http.max-requests个；
+     * 超出的请求只会在OkHttp的队列中排队，排队时间计入总时限，反而使其他题目超时
+     */
+    private static int maxConcurrency() {
+        ConfigManager configManager = ConfigManager.getInstance();
+        Set<String> hosts = new HashSet<>();
+        try {
+            for (AIProvider provider : ProviderRegistry.getInstance().pool(configManager.getAIProvider()).getProviders()) {
+                HttpUrl url = HttpUrl.parse(provider.getSettings().getApiUrl());
+                hosts.add(url != null ? url.host() : provider.getSettings().getApiUrl());
+            }
+        } catch (Exception e) {
+            logger.debug("读取提供商地址失败，按单个地址计算并发上限", e);
+        }
+        int perHost = configManager.getHttpMaxRequestsPerHost() * Math.max(hosts.size(), 1);
+        return Math.max(Math.min(perHost, configManager.getHttpMaxRequests()), 1);
+    }
+    
+    public BatchStats run(File input, File output) throws Exception {
+        List<BatchQuestion> questions = new BatchQuestionReader().read(input);
+        Set<String> answered = loadAnswered(output);
+        List<BatchQuestion> pending = new ArrayList<>();
+        for (BatchQuestion question : questions) {
+            if (!answered.contains(question.getId())) {
+                pending.add(question);
+            }
+        }
+        int skipped = questions.size() - pending.size();
+        
+        System.out.printf("共 %d 题，已回答 %d 题，本次回答 %d 题，并发数 %d，结果写入 %s%n",
+            questions.size(), skipped, pending.size(), concurrency, output.getPath());
+        
+        endWithNewline(output);
+        BatchStats stats = new BatchStats();
+        Semaphore permits = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(pending.size());
+        
+        try (BufferedWriter writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (BatchQuestion question : pending) {
+                permits.acquire();
+                long start = System.nanoTime();
+                BiConsumer<String, Throwable> complete = (answer, throwable) -> {
+                    try {
+                        long latency = (System.nanoTime() - start) / 1_000_000;
+                        Throwable cause = throwable instanceof CompletionException
+                            ? throwable.getCause() : throwable;
+                        writeResult(writer, question, answer, cause, latency);
+                        stats.record(latency, cause == null);
+                        System.out.printf("[%d/%d] %s %s %dms%n", stats.getCompleted(), pending.size(),
+                            question.getId(), cause == null ? "完成" : "失败: " + cause.getMessage(), latency);
+                    } catch (IOException e) {
+                        logger.error("写入结果时发生错误", e);
+                    } finally {
+                        permits.release();
+                        done.countDown();
+                    }
+                };
+                try {
+                    RequestOptions options = new RequestOptions().setTimeoutProfile(Deadline.Profile.BATCH);
+                    aiService.getResponseAsync(question.getQuestion(), null, options).getFuture()
+                        .whenComplete(complete);
+                } catch (RuntimeException e) {
+                    // 发起请求时同步抛出的异常同样记为失败，并归还并发额度和计数，否则done.await()会一直等待
+                    logger.error("发起请求时发生错误: {}", question.getId(), e);
+                    complete.accept(null, e);
+                }
+            }
+            done.await();
+        }
+        
+        System.out.println(stats.summary(skipped));
+        System.out.println(aiService.getUsageStats());
+        return stats;
+    }
+    
+    /**
+     * 每行写完立即刷新，进程中断时已完成的题目不会丢失
+     */
+    private void writeResult(BufferedWriter writer, BatchQuestion question, String answer,
+                             Throwable error, long latencyMillis) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", question.getId());
+        node.put("question", question.getQuestion());
+        if (error == null) {
+            node.put("answer", answer);
+        } else {
+            node.put("error", error.getMessage());
+        }
+        node.put("latency_ms", latencyMillis);
+        
+        String line = objectMapper.writeValueAsString(node);
+        synchronized (writer) {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+    
+    /**
+     * 上次运行在写一行的中途被中断时，先补上换行，避免新结果接在半行后面
+     */
+    private void endWithNewline(File output) throws IOException {
+        if (!output.isFile() || output.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            file.seek(file.length() - 1);
+            if (file.read() != '\n') {
+                file.write('\n');
+            }
+        }
+    }
+    
+    /**
+     * 从已有的结果文件中找出已成功回答的题目编号，中断时写了一半的行会被忽略
+     */
+    private Set<String> loadAnswered(File output) throws IOException {
+        Set<String> answered = new HashSet<>();
+        if (!output.isFile()) {
+            return answered;
+        }
+        
+        try (BufferedReader reader = Files.newBufferedReader(output.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    if (node.hasNonNull("id") && node.hasNonNull("answer")) {
+                        answered.add(node.get("id").asText());
+                    }
+                } catch (IOException e) {
+                    logger.warn("跳过结果文件中无法解析的行");
+                }
+            }
+        }
+        return answered;
+    }
+}
@@ -0,0 +1,63 @@
+package com.aiquiztool.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量答题的吞吐和延迟统计
+ * @author Tang En Dong
+ */
+public class BatchStats {
+    
+    private final long startNanos = System.nanoTime();
+    private final List<Long> latencies = new ArrayList<>();
+    private int succeeded = 0;
+    private int failed = 0;
+    
+    public synchronized void record(long latencyMillis, boolean success) {
+        latencies.add(latencyMillis);
+        if (success) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+    }
+    
+    public synchronized int getSucceeded() {
+        return succeeded;
+    }
+    
+    public synchronized int getFailed() {
+        return failed;
+    }
+    
+    public synchronized int getCompleted() {
+        return succeeded + failed;
+    }
+    
+    /**
+     * 生成统计摘要：耗时、吞吐量以及延迟的P50/P90/P99/最大值
+     */
+    public synchronized String summary(int skipped) {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("完成 %d 题（成功 %d，失败 %d，跳过已回答 %d），耗时 %.1f 秒%n",
+            getCompleted(), succeeded, failed, skipped, elapsedSeconds));
+        if (!sorted.isEmpty()) {
+            summary.append(String.format("吞吐量 %.2f 题/秒，延迟 P50 %dms / P90 %dms / P99 %dms / 最大 %dms",
+                elapsedSeconds > 0 ? getCompleted() / elapsedSeconds : 0.0,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                sorted.get(sorted.size() - 1)));
+        }
+        return summary.toString();
+    }
+    
+    private static long percentile(List<Long> sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
@@ -2,6 +2,8 @@ package com.aiquiztool.config;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigUtil;
 import com.typesafe.config.ConfigValueFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +13,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * 配置
@@ -20,11 +24,16 @@ public class ConfigManager {
     private static final Logger logger = LoggerFactory.getLogger(ConfigManager.class);
     private static final String CONFIG_FILE = "config.conf";
     private static final String CONFIG_DIR = System.getProperty("user.home") + File.separator + ".aiquiztool";
+    private static final String DEFAULT_SYSTEM_PROMPT = "你是一个有用的AI助手，请用中文回答问题。";
     
     private static ConfigManager instance;
-    private Config config;
+    private volatile Config config;
     private File configFile;
     
+    // Config不可变，每次修改都会替换引用，据此判断配置是否变化
+    private Config revisionConfig;
+    private long revision = 0;
+    
     private ConfigManager() {
         initializeConfig();
     }
@@ -36,6 +45,17 @@ public class ConfigManager {
         return instance;
     }
     
+    /**
+     * 配置版本号，任何设置被修改或重新加载后递增，用于判断按配置构建的对象是否需要重建
+     */
+    public synchronized long getRevision() {
+        if (config != revisionConfig) {
+            revisionConfig = config;
+            revision++;
+        }
+        return revision;
+    }
+    
     private void initializeConfig() {
         try {
             // 创建配置目录
@@ -74,10 +94,22 @@ public class ConfigManager {
             defaultConfig.append("# AI服务配置\n");
             defaultConfig.append("ai {\n");
             defaultConfig.append("  provider = \"openai\"\n");
+            defaultConfig.append("  # 多轮对话的上下文窗口（Token），0表示按模型自动判断\n");
+            defaultConfig.append("  context-window = 0\n");
+            defaultConfig.append("  # 故障转移：主提供商之后依次尝试的提供商，例如 [\"claude\", \"generic\"]\n");
+            defaultConfig.append("  failover-providers = []\n");
+            defaultConfig.append("  # 主提供商在该时间内没有返回内容时，同时向下一个提供商发送请求（毫秒）\n");
+            defaultConfig.append("  hedge-delay-ms = 3000\n");
+            defaultConfig.append("  # 系统提示词，所有请求共用；内容保持不变时服务端可以缓存这部分前缀\n");
+            defaultConfig.append("  system-prompt = ").append(ConfigUtil.quoteString(DEFAULT_SYSTEM_PROMPT)).append("\n");
+            defaultConfig.append("  # 提示词缓存：Claude请求为系统提示词和历史消息标记cache_control，OpenAI请求携带prompt_cache_key\n");
+            defaultConfig.append("  prompt-caching = true\n");
             defaultConfig.append("  \n");
             defaultConfig.append("  # OpenAI配置\n");
             defaultConfig.append("  openai {\n");
             defaultConfig.append("    api-key = \"\"\n");
+            defaultConfig.append("    # 更多API Key，请求在所有Key之间分配，例如 [\"key2\", \"key3\"]\n");
+            defaultConfig.append("    api-keys = []\n");
             defaultConfig.append("    api-url = \"https://api.openai.com/v1/chat/completions\"\n");
             defaultConfig.append("    model = \"gpt-3.5-turbo\"\n");
             defaultConfig.append("    max-tokens = 1000\n");
@@ -87,6 +119,8 @@ public class ConfigManager {
             defaultConfig.append("  # Claude配置（Anthropic）\n");
             defaultConfig.append("  claude {\n");
             defaultConfig.append("    api-key = \"\"\n");
+            defaultConfig.append("    # 更多API Key，请求在所有Key之间分配，例如 [\"key2\", \"key3\"]\n");
+            defaultConfig.append("    api-keys = []\n");
             defaultConfig.append("    api-url = \"https://api.anthropic.com/v1/messages\"\n");
             defaultConfig.append("    model = \"claude-3-sonnet-20240229\"\n");
             defaultConfig.append("    max-tokens = 1000\n");
@@ -96,7 +130,11 @@ public class ConfigManager {
             defaultConfig.append("  # 通用配置（支持其他兼容OpenAI格式的API）\n");
             defaultConfig.append("  generic {\n");
             defaultConfig.append("    api-key = \"\"\n");
+            defaultConfig.append("    # 更多API Key，请求在所有Key之间分配，例如 [\"key2\", \"key3\"]\n");
+            defaultConfig.append("    api-keys = []\n");
             defaultConfig.append("    api-url = \"\"\n");
+            defaultConfig.append("    # 更多服务地址，与api-url一起按Key和地址的组合分配请求\n");
+            defaultConfig.append("    api-urls = []\n");
             defaultConfig.append("    model = \"gpt-3.5-turbo\"\n");
             defaultConfig.append("    max-tokens = 1000\n");
             defaultConfig.append("    temperature = 0.7\n");
@@ -109,6 +147,15 @@ public class ConfigManager {
             defaultConfig.append("  provider = \"azure\"\n");
             defaultConfig.append("  language = \"zh-CN\"\n");
             defaultConfig.append("  sample-rate = 16000\n");
+            defaultConfig.append("  # 最长录音时间（秒），录音存储按此预先分配，达到后自动停止\n");
+            defaultConfig.append("  max-recording-seconds = 60\n");
+            defaultConfig.append("  # 录音时边录边上传（目前支持Azure），关闭后录音结束才上传\n");
+            defaultConfig.append("  streaming-upload = true\n");
+            defaultConfig.append("  # 语音活动检测：裁掉录音首尾的静音；auto-stop-silence-ms为说完话后静音多久自动停止录音，0表示不自动停止\n");
+            defaultConfig.append("  vad {\n");
+            defaultConfig.append("    enabled = true\n");
+            defaultConfig.append("    auto-stop-silence-ms = 1500\n");
+            defaultConfig.append("  }\n");
             defaultConfig.append("  \n");
             defaultConfig.append("  # Azure Speech Services\n");
             defaultConfig.append("  azure {\n");
@@ -121,6 +168,8 @@ public class ConfigManager {
             defaultConfig.append("  google {\n");
             defaultConfig.append("    api-key = \"\"\n");
             defaultConfig.append("    endpoint = \"https://speech.googleapis.com/v1/speech:recognize\"\n");
+            defaultConfig.append("    # 上传编码：flac（无损压缩，约为原始大小的一半）或 linear16（原始PCM）\n");
+            defaultConfig.append("    encoding = \"flac\"\n");
             defaultConfig.append("  }\n");
             defaultConfig.append("  \n");
             defaultConfig.append("  # 百度语音识别\n");
@@ -131,6 +180,73 @@ public class ConfigManager {
             defaultConfig.append("  }\n");
             defaultConfig.append("}\n\n");
             
+            defaultConfig.append("# 网络连接配置（修改后重启生效）\n");
+            defaultConfig.append("http {\n");
+            defaultConfig.append("  max-idle-connections = 5\n");
+            defaultConfig.append("  keep-alive-seconds = 300\n");
+            defaultConfig.append("  max-requests = 64\n");
+            defaultConfig.append("  max-requests-per-host = 10\n");
+            defaultConfig.append("  warmup-enabled = true\n");
+            defaultConfig.append("  warmup-interval-seconds = 60\n");
+            defaultConfig.append("}\n\n");
+            
+            defaultConfig.append("# 回答缓存配置\n");
+            defaultConfig.append("cache {\n");
+            defaultConfig.append("  enabled = true\n");
+            defaultConfig.append("  max-entries = 500\n");
+            defaultConfig.append("  disk-max-entries = 5000\n");
+            defaultConfig.append("  ttl-hours = 168\n");
+            defaultConfig.append("}\n\n");
+            
+            defaultConfig.append("# 重试与熔断配置\n");
+            defaultConfig.append("resilience {\n");
+            defaultConfig.append("  max-retries = 2\n");
+            defaultConfig.append("  retry-base-delay-ms = 500\n");
+            defaultConfig.append("  retry-max-delay-ms = 8000\n");
+            defaultConfig.append("  breaker-failure-threshold = 5\n");
+            defaultConfig.append("  breaker-open-seconds = 30\n");
+            defaultConfig.append("}\n\n");
+            
+            defaultConfig.append("# 客户端限流配置（收到服务端的限流响应头后自动调整）\n");
+            defaultConfig.append("ratelimit {\n");
+            defaultConfig.append("  enabled = true\n");
+            defaultConfig.append("  requests-per-minute = 120\n");
+            defaultConfig.append("  tokens-per-minute = 100000\n");
+            defaultConfig.append("}\n\n");
+            
+            defaultConfig.append("# 批量答题配置\n");
+            defaultConfig.append("batch {\n");
+            defaultConfig.append("  concurrency = 4\n");
+            defaultConfig.append("}\n\n");
+            
+            defaultConfig.append("# 多Key负载均衡（各提供商在api-keys中配置多个Key时生效）\n");
+            defaultConfig.append("key-pool {\n");
+            defaultConfig.append("  # 选择Key的方式：least-loaded（进行中请求最少）或 least-latency（平均延迟最低）\n");
+            defaultConfig.append("  selection = \"least-loaded\"\n");
+            defaultConfig.append("  # 返回429且没有Retry-After时暂停使用该Key的时间（秒）\n");
+            defaultConfig.append("  rate-limit-quarantine-seconds = 60\n");
+            defaultConfig.append("  # 返回401/403时暂停使用该Key的时间（秒）\n");
+            defaultConfig.append("  auth-quarantine-seconds = 600\n");
+            defaultConfig.append("}\n\n");
+            
+            defaultConfig.append("# 请求超时（毫秒，0表示不限制）；可在ai.<提供商>.timeout.<场景>中为单个提供商覆盖\n");
+            defaultConfig.append("timeout {\n");
+            defaultConfig.append("  # 界面对话\n");
+            defaultConfig.append("  interactive {\n");
+            defaultConfig.append("    connect-ms = 10000\n");
+            defaultConfig.append("    first-byte-ms = 30000\n");
+            defaultConfig.append("    idle-ms = 20000\n");
+            defaultConfig.append("    total-ms = 120000\n");
+            defaultConfig.append("  }\n");
+            defaultConfig.append("  # 批量答题\n");
+            defaultConfig.append("  batch {\n");
+            defaultConfig.append("    connect-ms = 30000\n");
+            defaultConfig.append("    first-byte-ms = 120000\n");
+            defaultConfig.append("    idle-ms = 60000\n");
+            defaultConfig.append("    total-ms = 600000\n");
+            defaultConfig.append("  }\n");
+            defaultConfig.append("}\n\n");
+            
             defaultConfig.append("# 界面配置\n");
             defaultConfig.append("ui {\n");
             defaultConfig.append("  theme = \"light\"\n");
@@ -171,32 +287,53 @@ public class ConfigManager {
             configContent.append("# AI服务配置\n");
             configContent.append("ai {\n");
             configContent.append("  provider = \"").append(getAIProvider()).append("\"\n");
+            configContent.append("  # 多轮对话的上下文窗口（Token），0表示按模型自动判断\n");
+            configContent.append("  context-window = ").append(getAIContextWindow()).append("\n");
+            configContent.append("  # 故障转移：主提供商之后依次尝试的提供商，例如 [\"claude\", \"generic\"]\n");
+            configContent.append("  failover-providers = ").append(listLiteral(getAIFailoverProviders())).append("\n");
+            configContent.append("  # 主提供商在该时间内没有返回内容时，同时向下一个提供商发送请求（毫秒）\n");
+            configContent.append("  hedge-delay-ms = ").append(getAIHedgeDelayMs()).append("\n");
+            configContent.append("  # 系统提示词，所有请求共用；内容保持不变时服务端可以缓存这部分前缀\n");
+            configContent.append("  system-prompt = ").append(ConfigUtil.quoteString(getAISystemPrompt())).append("\n");
+            configContent.append("  # 提示词缓存：Claude请求为系统提示词和历史消息标记cache_control，OpenAI请求携带prompt_cache_key\n");
+            configContent.append("  prompt-caching = ").append(isAIPromptCachingEnabled()).append("\n");
             configContent.append("  \n");
             configContent.append("  # OpenAI配置\n");
             configContent.append("  openai {\n");
             configContent.append("    api-key = \"").append(getOpenaiApiKey()).append("\"\n");
+            configContent.append("    # 更多API Key，请求在所有Key之间分配，例如 [\"key2\", \"key3\"]\n");
+            configContent.append("    api-keys = ").append(listLiteral(getOpenaiApiKeys())).append("\n");
             configContent.append("    api-url = \"").append(getOpenaiApiUrl()).append("\"\n");
             configContent.append("    model = \"").append(getOpenaiModel()).append("\"\n");
             configContent.append("    max-tokens = ").append(getOpenaiMaxTokens()).append("\n");
             configContent.append("    temperature = ").append(getOpenaiTemperature()).append("\n");
+            appendTimeoutOverride(configContent, "openai");
             configContent.append("  }\n");
             configContent.append("  \n");
             configContent.append("  # Claude配置（Anthropic）\n");
             configContent.append("  claude {\n");
             configContent.append("    api-key = \"").append(getClaudeApiKey()).append("\"\n");
+            configContent.append("    # 更多API Key，请求在所有Key之间分配，例如 [\"key2\", \"key3\"]\n");
+            configContent.append("    api-keys = ").append(listLiteral(getClaudeApiKeys())).append("\n");
             configContent.append("    api-url = \"").append(getClaudeApiUrl()).append("\"\n");
             configContent.append("    model = \"").append(getClaudeModel()).append("\"\n");
             configContent.append("    max-tokens = ").append(getClaudeMaxTokens()).append("\n");
             configContent.append("    temperature = ").append(getClaudeTemperature()).append("\n");
+            appendTimeoutOverride(configContent, "claude");
             configContent.append("  }\n");
             configContent.append("  \n");
             configContent.append("  # 通用配置（支持其他兼容OpenAI格式的API）\n");
             configContent.append("  generic {\n");
             configContent.append("    api-key = \"").append(getGenericApiKey()).append("\"\n");
+            configContent.append("    # 更多API Key，请求在所有Key之间分配，例如 [\"key2\", \"key3\"]\n");
+            configContent.append("    api-keys = ").append(listLiteral(getGenericApiKeys())).append("\n");
             configContent.append("    api-url = \"").append(getGenericApiUrl()).append("\"\n");
+            configContent.append("    # 更多服务地址，与api-url一起按Key和地址的组合分配请求\n");
+            configContent.append("    api-urls = ").append(listLiteral(getGenericApiUrls())).append("\n");
             configContent.append("    model = \"").append(getGenericModel()).append("\"\n");
             configContent.append("    max-tokens = ").append(getGenericMaxTokens()).append("\n");
             configContent.append("    temperature = ").append(getGenericTemperature()).append("\n");
+            appendTimeoutOverride(configContent, "generic");
             configContent.append("  }\n");
             configContent.append("}\n\n");
             
@@ -206,6 +343,15 @@ public class ConfigManager {
             configContent.append("  provider = \"").append(getSpeechProvider()).append("\"\n");
             configContent.append("  language = \"").append(getSpeechLanguage()).append("\"\n");
             configContent.append("  sample-rate = ").append(getSpeechSampleRate()).append("\n");
+            configContent.append("  # 最长录音时间（秒），录音存储按此预先分配，达到后自动停止\n");
+            configContent.append("  max-recording-seconds = ").append(getSpeechMaxRecordingSeconds()).append("\n");
+            configContent.append("  # 录音时边录边上传（目前支持Azure），关闭后录音结束才上传\n");
+            configContent.append("  streaming-upload = ").append(isSpeechStreamingUploadEnabled()).append("\n");
+            configContent.append("  # 语音活动检测：裁掉录音首尾的静音；auto-stop-silence-ms为说完话后静音多久自动停止录音，0表示不自动停止\n");
+            configContent.append("  vad {\n");
+            configContent.append("    enabled = ").append(isSpeechVadEnabled()).append("\n");
+            configContent.append("    auto-stop-silence-ms = ").append(getSpeechAutoStopSilenceMillis()).append("\n");
+            configContent.append("  }\n");
             configContent.append("  \n");
             configContent.append("  # Azure Speech Services\n");
             configContent.append("  azure {\n");
@@ -218,6 +364,8 @@ public class ConfigManager {
             configContent.append("  google {\n");
             configContent.append("    api-key = \"").append(getGoogleApiKey()).append("\"\n");
             configContent.append("    endpoint = \"").append(getGoogleEndpoint()).append("\"\n");
+            configContent.append("    # 上传编码：flac（无损压缩，约为原始大小的一半）或 linear16（原始PCM）\n");
+            configContent.append("    encoding = \"").append(getGoogleEncoding()).append("\"\n");
             configContent.append("  }\n");
             configContent.append("  \n");
             configContent.append("  # 百度语音识别\n");
@@ -228,6 +376,73 @@ public class ConfigManager {
             configContent.append("  }\n");
             configContent.append("}\n\n");
             
+            configContent.append("# 网络连接配置（修改后重启生效）\n");
+            configContent.append("http {\n");
+            configContent.append("  max-idle-connections = ").append(getHttpMaxIdleConnections()).append("\n");
+            configContent.append("  keep-alive-seconds = ").append(getHttpKeepAliveSeconds()).append("\n");
+            configContent.append("  max-requests = ").append(getHttpMaxRequests()).append("\n");
+            configContent.append("  max-requests-per-host = ").append(getHttpMaxRequestsPerHost()).append("\n");
+            configContent.append("  warmup-enabled = ").append(isHttpWarmupEnabled()).append("\n");
+            configContent.append("  warmup-interval-seconds = ").append(getHttpWarmupIntervalSeconds()).append("\n");
+            configContent.append("}\n\n");
+            
+            configContent.append("# 回答缓存配置\n");
+            configContent.append("cache {\n");
+            configContent.append("  enabled = ").append(isCacheEnabled()).append("\n");
+            configContent.append("  max-entries = ").append(getCacheMaxEntries()).append("\n");
+            configContent.append("  disk-max-entries = ").append(getCacheDiskMaxEntries()).append("\n");
+            configContent.append("  ttl-hours = ").append(getCacheTtlHours()).append("\n");
+            configContent.append("}\n\n");
+            
+            configContent.append("# 重试与熔断配置\n");
+            configContent.append("resilience {\n");
+            configContent.append("  max-retries = ").append(getMaxRetries()).append("\n");
+            configContent.append("  retry-base-delay-ms = ").append(getRetryBaseDelayMs()).append("\n");
+            configContent.append("  retry-max-delay-ms = ").append(getRetryMaxDelayMs()).append("\n");
+            configContent.append("  breaker-failure-threshold = ").append(getBreakerFailureThreshold()).append("\n");
+            configContent.append("  breaker-open-seconds = ").append(getBreakerOpenSeconds()).append("\n");
+            configContent.append("}\n\n");
+            
+            configContent.append("# 客户端限流配置（收到服务端的限流响应头后自动调整）\n");
+            configContent.append("ratelimit {\n");
+            configContent.append("  enabled = ").append(isRateLimitEnabled()).append("\n");
+            configContent.append("  requests-per-minute = ").append(getRateLimitRequestsPerMinute()).append("\n");
+            configContent.append("  tokens-per-minute = ").append(getRateLimitTokensPerMinute()).append("\n");
+            configContent.append("}\n\n");
+            
+            configContent.append("# 批量答题配置\n");
+            configContent.append("batch {\n");
+            configContent.append("  concurrency = ").append(getBatchConcurrency()).append("\n");
+            configContent.append("}\n\n");
+            
+            configContent.append("# 多Key负载均衡（各提供商在api-keys中配置多个Key时生效）\n");
+            configContent.append("key-pool {\n");
+            configContent.append("  # 选择Key的方式：least-loaded（进行中请求最少）或 least-latency（平均延迟最低）\n");
+            configContent.append("  selection = \"").append(getKeyPoolSelection()).append("\"\n");
+            configContent.append("  # 返回429且没有Retry-After时暂停使用该Key的时间（秒）\n");
+            configContent.append("  rate-limit-quarantine-seconds = ").append(getKeyPoolRateLimitQuarantineSeconds()).append("\n");
+            configContent.append("  # 返回401/403时暂停使用该Key的时间（秒）\n");
+            configContent.append("  auth-quarantine-seconds = ").append(getKeyPoolAuthQuarantineSeconds()).append("\n");
+            configContent.append("}\n\n");
+            
+            configContent.append("# 请求超时（毫秒，0表示不限制）；可在ai.<提供商>.timeout.<场景>中为单个提供商覆盖\n");
+            configContent.append("timeout {\n");
+            configContent.append("  # 界面对话\n");
+            configContent.append("  interactive {\n");
+            configContent.append("    connect-ms = ").append(getTimeoutMillis("interactive", "connect-ms")).append("\n");
+            configContent.append("    first-byte-ms = ").append(getTimeoutMillis("interactive", "first-byte-ms")).append("\n");
+            configContent.append("    idle-ms = ").append(getTimeoutMillis("interactive", "idle-ms")).append("\n");
+            configContent.append("    total-ms = ").append(getTimeoutMillis("interactive", "total-ms")).append("\n");
+            configContent.append("  }\n");
+            configContent.append("  # 批量答题\n");
+            configContent.append("  batch {\n");
+            configContent.append("    connect-ms = ").append(getTimeoutMillis("batch", "connect-ms")).append("\n");
+            configContent.append("    first-byte-ms = ").append(getTimeoutMillis("batch", "first-byte-ms")).append("\n");
+            configContent.append("    idle-ms = ").append(getTimeoutMillis("batch", "idle-ms")).append("\n");
+            configContent.append("    total-ms = ").append(getTimeoutMillis("batch", "total-ms")).append("\n");
+            configContent.append("  }\n");
+            configContent.append("}\n\n");
+            
             configContent.append("# 界面配置\n");
             configContent.append("ui {\n");
             configContent.append("  theme = \"").append(getUITheme()).append("\"\n");
@@ -258,6 +473,28 @@ public class ConfigManager {
         }
     }
     
+    /**
+     * 原样写回提供商单独设置的超时（ai.<提供商>.timeout），没有设置时不写
+     */
+    private void appendTimeoutOverride(StringBuilder content, String provider) {
+        String path = "ai." + provider + ".timeout";
+        if (config.hasPath(path)) {
+            content.append("    timeout = ").append(config.getValue(path).render(ConfigRenderOptions.concise()))
+                .append("\n");
+        }
+    }
+    
+    /**
+     * 字符串列表写成HOCON数组
+     */
+    private static String listLiteral(List<String> values) {
+        StringBuilder literal = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            literal.append(i > 0 ? ", " : "").append(ConfigUtil.quoteString(values.get(i)));
+        }
+        return literal.append("]").toString();
+    }
+    
     public String getAIProvider() {
         return config.hasPath("ai.provider") ? config.getString("ai.provider") : "openai";
     }
@@ -266,6 +503,47 @@ public class ConfigManager {
         config = config.withValue("ai.provider", ConfigValueFactory.fromAnyRef(provider));
     }
     
+    public int getAIContextWindow() {
+        return config.hasPath("ai.context-window") ? config.getInt("ai.context-window") : 0;
+    }
+    
+    public void setAIContextWindow(int contextWindow) {
+        config = config.withValue("ai.context-window", ConfigValueFactory.fromAnyRef(contextWindow));
+    }
+    
+    public List<String> getAIFailoverProviders() {
+        return config.hasPath("ai.failover-providers") ? config.getStringList("ai.failover-providers")
+               : Collections.emptyList();
+    }
+    
+    public void setAIFailoverProviders(List<String> providers) {
+        config = config.withValue("ai.failover-providers", ConfigValueFactory.fromIterable(providers));
+    }
+    
+    public long getAIHedgeDelayMs() {
+        return config.hasPath("ai.hedge-delay-ms") ? config.getLong("ai.hedge-delay-ms") : 3000;
+    }
+    
+    public void setAIHedgeDelayMs(long hedgeDelayMs) {
+        config = config.withValue("ai.hedge-delay-ms", ConfigValueFactory.fromAnyRef(hedgeDelayMs));
+    }
+    
+    public String getAISystemPrompt() {
+        return config.hasPath("ai.system-prompt") ? config.getString("ai.system-prompt") : DEFAULT_SYSTEM_PROMPT;
+    }
+    
+    public void setAISystemPrompt(String systemPrompt) {
+        config = config.withValue("ai.system-prompt", ConfigValueFactory.fromAnyRef(systemPrompt));
+    }
+    
+    public boolean isAIPromptCachingEnabled() {
+        return config.hasPath("ai.prompt-caching") ? config.getBoolean("ai.prompt-caching") : true;
+    }
+    
+    public void setAIPromptCachingEnabled(boolean enabled) {
+        config = config.withValue("ai.prompt-caching", ConfigValueFactory.fromAnyRef(enabled));
+    }
+    
     public String getOpenaiApiKey() {
         return config.hasPath("ai.openai.api-key") ? config.getString("ai.openai.api-key") : 
                (config.hasPath("openai.api-key") ? config.getString("openai.api-key") : "");
@@ -275,6 +553,14 @@ public class ConfigManager {
         config = config.withValue("ai.openai.api-key", ConfigValueFactory.fromAnyRef(apiKey));
     }
     
+    public List<String> getOpenaiApiKeys() {
+        return config.hasPath("ai.openai.api-keys") ? config.getStringList("ai.openai.api-keys") : Collections.emptyList();
+    }
+    
+    public void setOpenaiApiKeys(List<String> apiKeys) {
+        config = config.withValue("ai.openai.api-keys", ConfigValueFactory.fromIterable(apiKeys));
+    }
+    
     public String getOpenaiApiUrl() {
         return config.hasPath("ai.openai.api-url") ? config.getString("ai.openai.api-url") : 
                (config.hasPath("openai.api-url") ? config.getString("openai.api-url") : "https://api.openai.com/v1/chat/completions");
@@ -326,6 +612,14 @@ public class ConfigManager {
         config = config.withValue("ai.claude.api-key", ConfigValueFactory.fromAnyRef(apiKey));
     }
     
+    public List<String> getClaudeApiKeys() {
+        return config.hasPath("ai.claude.api-keys") ? config.getStringList("ai.claude.api-keys") : Collections.emptyList();
+    }
+    
+    public void setClaudeApiKeys(List<String> apiKeys) {
+        config = config.withValue("ai.claude.api-keys", ConfigValueFactory.fromIterable(apiKeys));
+    }
+    
     public String getClaudeApiUrl() {
         return config.hasPath("ai.claude.api-url") ? config.getString("ai.claude.api-url") : "https://api.anthropic.com/v1/messages";
     }
@@ -366,6 +660,14 @@ public class ConfigManager {
         config = config.withValue("ai.generic.api-key", ConfigValueFactory.fromAnyRef(apiKey));
     }
     
+    public List<String> getGenericApiKeys() {
+        return config.hasPath("ai.generic.api-keys") ? config.getStringList("ai.generic.api-keys") : Collections.emptyList();
+    }
+    
+    public void setGenericApiKeys(List<String> apiKeys) {
+        config = config.withValue("ai.generic.api-keys", ConfigValueFactory.fromIterable(apiKeys));
+    }
+    
     public String getGenericApiUrl() {
         return config.hasPath("ai.generic.api-url") ? config.getString("ai.generic.api-url") : "";
     }
@@ -374,6 +676,15 @@ public class ConfigManager {
         config = config.withValue("ai.generic.api-url", ConfigValueFactory.fromAnyRef(apiUrl));
     }
     
+    public List<String> getGenericApiUrls() {
+        return config.hasPath("ai.generic.api-urls") ? config.getStringList("ai.generic.api-urls")
+               : Collections.emptyList();
+    }
+    
+    public void setGenericApiUrls(List<String> apiUrls) {
+        config = config.withValue("ai.generic.api-urls", ConfigValueFactory.fromIterable(apiUrls));
+    }
+    
     public String getGenericModel() {
         return config.hasPath("ai.generic.model") ? config.getString("ai.generic.model") : "gpt-3.5-turbo";
     }
@@ -422,6 +733,38 @@ public class ConfigManager {
         config = config.withValue("speech.sample-rate", ConfigValueFactory.fromAnyRef(sampleRate));
     }
     
+    public int getSpeechMaxRecordingSeconds() {
+        return config.hasPath("speech.max-recording-seconds") ? config.getInt("speech.max-recording-seconds") : 60;
+    }
+    
+    public void setSpeechMaxRecordingSeconds(int seconds) {
+        config = config.withValue("speech.max-recording-seconds", ConfigValueFactory.fromAnyRef(seconds));
+    }
+    
+    public boolean isSpeechStreamingUploadEnabled() {
+        return config.hasPath("speech.streaming-upload") ? config.getBoolean("speech.streaming-upload") : true;
+    }
+    
+    public void setSpeechStreamingUploadEnabled(boolean enabled) {
+        config = config.withValue("speech.streaming-upload", ConfigValueFactory.fromAnyRef(enabled));
+    }
+    
+    public boolean isSpeechVadEnabled() {
+        return config.hasPath("speech.vad.enabled") ? config.getBoolean("speech.vad.enabled") : true;
+    }
+    
+    public void setSpeechVadEnabled(boolean enabled) {
+        config = config.withValue("speech.vad.enabled", ConfigValueFactory.fromAnyRef(enabled));
+    }
+    
+    public int getSpeechAutoStopSilenceMillis() {
+        return config.hasPath("speech.vad.auto-stop-silence-ms") ? config.getInt("speech.vad.auto-stop-silence-ms") : 1500;
+    }
+    
+    public void setSpeechAutoStopSilenceMillis(int millis) {
+        config = config.withValue("speech.vad.auto-stop-silence-ms", ConfigValueFactory.fromAnyRef(millis));
+    }
+    
     public String getSpeechProvider() {
         return config.hasPath("speech.provider") ? config.getString("speech.provider") : "azure";
     }
@@ -470,6 +813,14 @@ public class ConfigManager {
         config = config.withValue("speech.google.endpoint", ConfigValueFactory.fromAnyRef(endpoint));
     }
     
+    public String getGoogleEncoding() {
+        return config.hasPath("speech.google.encoding") ? config.getString("speech.google.encoding") : "flac";
+    }
+    
+    public void setGoogleEncoding(String encoding) {
+        config = config.withValue("speech.google.encoding", ConfigValueFactory.fromAnyRef(encoding));
+    }
+    
     public String getBaiduAppId() {
         return config.hasPath("speech.baidu.app-id") ? config.getString("speech.baidu.app-id") : "";
     }
@@ -494,6 +845,217 @@ public class ConfigManager {
         config = config.withValue("speech.baidu.secret-key", ConfigValueFactory.fromAnyRef(key));
     }
     
+    public int getHttpMaxIdleConnections() {
+        return config.hasPath("http.max-idle-connections") ? config.getInt("http.max-idle-connections") : 5;
+    }
+    
+    public void setHttpMaxIdleConnections(int maxIdleConnections) {
+        config = config.withValue("http.max-idle-connections", ConfigValueFactory.fromAnyRef(maxIdleConnections));
+    }
+    
+    public int getHttpKeepAliveSeconds() {
+        return config.hasPath("http.keep-alive-seconds") ? config.getInt("http.keep-alive-seconds") : 300;
+    }
+    
+    public void setHttpKeepAliveSeconds(int keepAliveSeconds) {
+        config = config.withValue("http.keep-alive-seconds", ConfigValueFactory.fromAnyRef(keepAliveSeconds));
+    }
+    
+    public int getHttpMaxRequests() {
+        return config.hasPath("http.max-requests") ? config.getInt("http.max-requests") : 64;
+    }
+    
+    public void setHttpMaxRequests(int maxRequests) {
+        config = config.withValue("http.max-requests", ConfigValueFactory.fromAnyRef(maxRequests));
+    }
+    
+    public int getHttpMaxRequestsPerHost() {
+        return config.hasPath("http.max-requests-per-host") ? config.getInt("http.max-requests-per-host") : 10;
+    }
+    
+    public void setHttpMaxRequestsPerHost(int maxRequestsPerHost) {
+        config = config.withValue("http.max-requests-per-host", ConfigValueFactory.fromAnyRef(maxRequestsPerHost));
+    }
+    
+    public boolean isHttpWarmupEnabled() {
+        return !config.hasPath("http.warmup-enabled") || config.getBoolean("http.warmup-enabled");
+    }
+    
+    public void setHttpWarmupEnabled(boolean enabled) {
+        config = config.withValue("http.warmup-enabled", ConfigValueFactory.fromAnyRef(enabled));
+    }
+    
+    public int getHttpWarmupIntervalSeconds() {
+        return config.hasPath("http.warmup-interval-seconds") ? config.getInt("http.warmup-interval-seconds") : 60;
+    }
+    
+    public void setHttpWarmupIntervalSeconds(int seconds) {
+        config = config.withValue("http.warmup-interval-seconds", ConfigValueFactory.fromAnyRef(seconds));
+    }
+    
+    public boolean isCacheEnabled() {
+        return !config.hasPath("cache.enabled") || config.getBoolean("cache.enabled");
+    }
+    
+    public void setCacheEnabled(boolean enabled) {
+        config = config.withValue("cache.enabled", ConfigValueFactory.fromAnyRef(enabled));
+    }
+    
+    public int getCacheMaxEntries() {
+        return config.hasPath("cache.max-entries") ? config.getInt("cache.max-entries") : 500;
+    }
+    
+    public void setCacheMaxEntries(int maxEntries) {
+        config = config.withValue("cache.max-entries", ConfigValueFactory.fromAnyRef(maxEntries));
+    }
+    
+    public int getCacheDiskMaxEntries() {
+        return config.hasPath("cache.disk-max-entries") ? config.getInt("cache.disk-max-entries") : 5000;
+    }
+    
+    public void setCacheDiskMaxEntries(int maxEntries) {
+        config = config.withValue("cache.disk-max-entries", ConfigValueFactory.fromAnyRef(maxEntries));
+    }
+    
+    public int getCacheTtlHours() {
+        return config.hasPath("cache.ttl-hours") ? config.getInt("cache.ttl-hours") : 168;
+    }
+    
+    public void setCacheTtlHours(int ttlHours) {
+        config = config.withValue("cache.ttl-hours", ConfigValueFactory.fromAnyRef(ttlHours));
+    }
+    
+    public int getMaxRetries() {
+        return config.hasPath("resilience.max-retries") ? config.getInt("resilience.max-retries") : 2;
+    }
+    
+    public void setMaxRetries(int maxRetries) {
+        config = config.withValue("resilience.max-retries", ConfigValueFactory.fromAnyRef(maxRetries));
+    }
+    
+    public long getRetryBaseDelayMs() {
+        return config.hasPath("resilience.retry-base-delay-ms") ? config.getLong("resilience.retry-base-delay-ms") : 500;
+    }
+    
+    public void setRetryBaseDelayMs(long delayMs) {
+        config = config.withValue("resilience.retry-base-delay-ms", ConfigValueFactory.fromAnyRef(delayMs));
+    }
+    
+    public long getRetryMaxDelayMs() {
+        return config.hasPath("resilience.retry-max-delay-ms") ? config.getLong("resilience.retry-max-delay-ms") : 8000;
+    }
+    
+    public void setRetryMaxDelayMs(long delayMs) {
+        config = config.withValue("resilience.retry-max-delay-ms", ConfigValueFactory.fromAnyRef(delayMs));
+    }
+    
+    public int getBreakerFailureThreshold() {
+        return config.hasPath("resilience.breaker-failure-threshold") ? config.getInt("resilience.breaker-failure-threshold") : 5;
+    }
+    
+    public void setBreakerFailureThreshold(int threshold) {
+        config = config.withValue("resilience.breaker-failure-threshold", ConfigValueFactory.fromAnyRef(threshold));
+    }
+    
+    public int getBreakerOpenSeconds() {
+        return config.hasPath("resilience.breaker-open-seconds") ? config.getInt("resilience.breaker-open-seconds") : 30;
+    }
+    
+    public void setBreakerOpenSeconds(int seconds) {
+        config = config.withValue("resilience.breaker-open-seconds", ConfigValueFactory.fromAnyRef(seconds));
+    }
+    
+    public boolean isRateLimitEnabled() {
+        return !config.hasPath("ratelimit.enabled") || config.getBoolean("ratelimit.enabled");
+    }
+    
+    public void setRateLimitEnabled(boolean enabled) {
+        config = config.withValue("ratelimit.enabled", ConfigValueFactory.fromAnyRef(enabled));
+    }
+    
+    public int getRateLimitRequestsPerMinute() {
+        return config.hasPath("ratelimit.requests-per-minute") ? config.getInt("ratelimit.requests-per-minute") : 120;
+    }
+    
+    public void setRateLimitRequestsPerMinute(int requestsPerMinute) {
+        config = config.withValue("ratelimit.requests-per-minute", ConfigValueFactory.fromAnyRef(requestsPerMinute));
+    }
+    
+    public int getRateLimitTokensPerMinute() {
+        return config.hasPath("ratelimit.tokens-per-minute") ? config.getInt("ratelimit.tokens-per-minute") : 100000;
+    }
+    
+    public void setRateLimitTokensPerMinute(int tokensPerMinute) {
+        config = config.withValue("ratelimit.tokens-per-minute", ConfigValueFactory.fromAnyRef(tokensPerMinute));
+    }
+    
+    public int getBatchConcurrency() {
+        return config.hasPath("batch.concurrency") ? config.getInt("batch.concurrency") : 4;
+    }
+    
+    public void setBatchConcurrency(int concurrency) {
+        config = config.withValue("batch.concurrency", ConfigValueFactory.fromAnyRef(concurrency));
+    }
+    
+    public String getKeyPoolSelection() {
+        return config.hasPath("key-pool.selection") ? config.getString("key-pool.selection") : "least-loaded";
+    }
+    
+    public void setKeyPoolSelection(String selection) {
+        config = config.withValue("key-pool.selection", ConfigValueFactory.fromAnyRef(selection));
+    }
+    
+    public int getKeyPoolRateLimitQuarantineSeconds() {
+        return config.hasPath("key-pool.rate-limit-quarantine-seconds") ? config.getInt("key-pool.rate-limit-quarantine-seconds") : 60;
+    }
+    
+    public void setKeyPoolRateLimitQuarantineSeconds(int seconds) {
+        config = config.withValue("key-pool.rate-limit-quarantine-seconds", ConfigValueFactory.fromAnyRef(seconds));
+    }
+    
+    public int getKeyPoolAuthQuarantineSeconds() {
+        return config.hasPath("key-pool.auth-quarantine-seconds") ? config.getInt("key-pool.auth-quarantine-seconds") : 600;
+    }
+    
+    public void setKeyPoolAuthQuarantineSeconds(int seconds) {
+        config = config.withValue("key-pool.auth-quarantine-seconds", ConfigValueFactory.fromAnyRef(seconds));
+    }
+    
+    /**
+     * 某个场景（interactive或batch）的超时时间，单位毫秒，0表示不限制
+     */
+    public long getTimeoutMillis(String profile, String key) {
+        String path = "timeout." + profile + "." + key;
+        if (config.hasPath(path)) {
+            return config.getLong(path);
+        }
+        boolean batch = "batch".equals(profile);
+        switch (key) {
+            case "connect-ms":
+                return batch ? 30000 : 10000;
+            case "first-byte-ms":
+                return batch ? 120000 : 30000;
+            case "idle-ms":
+                return batch ? 60000 : 20000;
+            case "total-ms":
+                return batch ? 600000 : 120000;
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * 某个提供商在某个场景下的超时时间，ai.<提供商>.timeout.<场景>中的设置优先
+     */
+    public long getTimeoutMillis(String profile, String provider, String key) {
+        String path = "ai." + provider + ".timeout." + profile + "." + key;
+        return config.hasPath(path) ? config.getLong(path) : getTimeoutMillis(profile, key);
+    }
+    
+    public void setTimeoutMillis(String profile, String key, long millis) {
+        config = config.withValue("timeout." + profile + "." + key, ConfigValueFactory.fromAnyRef(millis));
+    }
+    
     public String getUITheme() {
         return config.getString("ui.theme");
     }
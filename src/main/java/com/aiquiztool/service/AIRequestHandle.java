@@ -0,0 +1,108 @@
+package com.aiquiztool.service;
+
+import okhttp3.Call;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步AI请求句柄
+ * 持有结果Future和取消动作，取消时中断底层网络请求，
+ * 与其他请求合并时只退出合并，不影响其他等待者
+ * @author Tang En Dong
+ */
+public class AIRequestHandle {
+    
+    private final CompletableFuture<String> future = new CompletableFuture<>();
+    private volatile Runnable canceller;
+    private volatile boolean cancelled = false;
+    private volatile boolean delivered = false;
+    
+    /**
+     * 回复完成时得到完整文本，失败时以异常完成
+     */
+    public CompletableFuture<String> getFuture() {
+        return future;
+    }
+    
+    /**
+     * 取消请求，已经完成的请求不受影响
+     */
+    public void cancel() {
+        if (future.isDone()) {
+            return;
+        }
+        cancelled = true;
+        Runnable current = canceller;
+        if (current != null) {
+            current.run();
+        }
+        future.completeExceptionally(new CancellationException("请求已取消"));
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public boolean isDone() {
+        return future.isDone();
+    }
+    
+    /**
+     * 是否已经向调用方输出过增量内容，输出之后请求失败不能再重试
+     */
+    boolean hasDelivered() {
+        return delivered;
+    }
+    
+    void attach(Call call) {
+        onCancel(call::cancel);
+    }
+    
+    /**
+     * 设置取消时执行的动作，句柄已取消时立即执行
+     */
+    void onCancel(Runnable action) {
+        this.canceller = action;
+        if (cancelled) {
+            action.run();
+        }
+    }
+    
+    void complete(String text) {
+        future.complete(text);
+    }
+    
+    void completeExceptionally(Throwable throwable) {
+        future.completeExceptionally(throwable);
+    }
+    
+    /**
+     * 包装监听器，请求取消后不再向调用方派发增量
+     */
+    StreamListener guard(StreamListener listener) {
+        return new StreamListener() {
+            @Override
+            public void onDelta(String delta) {
+                if (!cancelled) {
+                    delivered = true;
+                    listener.onDelta(delta);
+                }
+            }
+            
+            @Override
+            public void onUsage(TokenUsage usage) {
+                if (!cancelled) {
+                    listener.onUsage(usage);
+                }
+            }
+            
+            @Override
+            public void onComplete(String fullText) {
+                if (!cancelled) {
+                    listener.onComplete(fullText);
+                }
+            }
+        };
+    }
+}
@@ -1,13 +1,23 @@
 package com.aiquiztool.service;
 
 import com.aiquiztool.config.ConfigManager;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.aiquiztool.service.provider.AIProvider;
+import com.aiquiztool.service.provider.EndpointPool;
+import com.aiquiztool.service.provider.ProviderRegistry;
+import com.aiquiztool.service.stats.ProviderStats;
+import com.aiquiztool.service.stats.UsageStats;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -18,286 +28,433 @@ public class AIService {
     private static final Logger logger = LoggerFactory.getLogger(AIService.class);
     
     private final OkHttpClient httpClient;
-    private final ObjectMapper objectMapper;
     private final ConfigManager configManager;
+    private final ProviderRegistry providers;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    private final UsageStats usageStats;
+    private final Set<AIRequestHandle> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile Snapshot snapshot;
     
     public AIService() {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
+        // 连接和读取的时限由每个请求的Deadline控制，这里不再设置固定的超时
+        this.httpClient = HttpClientManager.getInstance().newBuilder()
+            .connectTimeout(0, TimeUnit.SECONDS)
+            .readTimeout(0, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
+            .addInterceptor(DeadlineWatchdog.DISPATCH_INTERCEPTOR)
+            .addNetworkInterceptor(DeadlineWatchdog.NETWORK_INTERCEPTOR)
             .build();
         
-        this.objectMapper = new ObjectMapper();
         this.configManager = ConfigManager.getInstance();
+        this.providers = ProviderRegistry.getInstance();
+        this.responseCache = ResponseCache.getInstance();
+        this.coalescer = new RequestCoalescer();
+        this.usageStats = UsageStats.getInstance();
+        
+        // 在后台加载当前模型的词表，输入框统计Token数时不必等待
+        BpeTokenizer.preload(currentSettings(snapshot()).getModel());
     }
     
     public String getResponse(String userMessage) throws Exception {
-        String provider = configManager.getAIProvider();
-        
-        switch (provider.toLowerCase()) {
-            case "openai":
-                return getOpenAIResponse(userMessage);
-            case "claude":
-                return getClaudeResponse(userMessage);
-            case "generic":
-                return getGenericResponse(userMessage);
-            default:
-                throw new Exception("不支持的AI服务提供商: " + provider);
-        }
+        return await(getResponseAsync(userMessage, null));
     }
     
-    private String getOpenAIResponse(String userMessage) throws Exception {
-        String apiKey = configManager.getOpenaiApiKey();
-        String apiUrl = configManager.getOpenaiApiUrl();
-        String model = configManager.getOpenaiModel();
-        int maxTokens = configManager.getOpenaiMaxTokens();
-        double temperature = configManager.getOpenaiTemperature();
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new Exception("OpenAI API Key未配置，请在设置中配置");
-        }
-        
-        if (apiUrl == null || apiUrl.trim().isEmpty()) {
-            throw new Exception("OpenAI API URL未配置，请在设置中配置");
-        }
-        
-        try {
-            return callOpenAIAPI(userMessage, apiKey, apiUrl, model, maxTokens, temperature);
-        } catch (Exception e) {
-            logger.error("调用OpenAI API时发生错误", e);
-            throw new Exception("获取OpenAI回复失败: " + e.getMessage());
+    /**
+     * 以流式方式获取回复，增量文本通过监听器回调，返回完整文本
+     */
+    public String getStreamingResponse(String userMessage, StreamListener listener) throws Exception {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener不能为空");
         }
+        return await(getResponseAsync(userMessage, listener));
     }
     
-    private String getClaudeResponse(String userMessage) throws Exception {
-        String apiKey = configManager.getClaudeApiKey();
-        String apiUrl = configManager.getClaudeApiUrl();
-        String model = configManager.getClaudeModel();
-        int maxTokens = configManager.getClaudeMaxTokens();
-        double temperature = configManager.getClaudeTemperature();
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new Exception("Claude API Key未配置，请在设置中配置");
+    /**
+     * 异步获取回复，请求通过OkHttp的调度器发出，不占用调用方线程
+     * listener为空时使用普通请求，否则使用流式请求
+     * 返回的句柄可用于等待结果或取消底层请求
+     */
+    public AIRequestHandle getResponseAsync(String userMessage, StreamListener listener) {
+        return getResponseAsync(userMessage, listener, new RequestOptions());
+    }
+    
+    /**
+     * 异步获取回复，可通过options指定跳过缓存、携带多轮对话上下文等行为
+     * 相同的问题已有请求在进行时，加入该请求而不是重新调用服务端
+     */
+    public AIRequestHandle getResponseAsync(String userMessage, StreamListener listener, RequestOptions options) {
+        Snapshot config = snapshot();
+        AIProvider provider;
+        try {
+            provider = providers.get(config.provider);
+        } catch (Exception e) {
+            AIRequestHandle handle = new AIRequestHandle();
+            handle.completeExceptionally(e);
+            return handle;
         }
+        ProviderSettings settings = provider.getSettings();
+        String systemPrompt = config.systemPrompt;
         
-        if (apiUrl == null || apiUrl.trim().isEmpty()) {
-            throw new Exception("Claude API URL未配置，请在设置中配置");
+        // 超出模型上下文的问题在本地拒绝，不必等服务端返回400
+        TokenCounter tokenCounter = BpeTokenizer.forModel(settings.getModel());
+        int promptTokens = tokenCounter.count(userMessage);
+        int promptLimit = promptTokenLimit(config, settings, tokenCounter);
+        if (promptTokens > promptLimit) {
+            AIRequestHandle handle = new AIRequestHandle();
+            handle.completeExceptionally(new Exception(
+                "问题过长: 约" + promptTokens + "个Token，超过当前模型允许的" + promptLimit + "个Token"));
+            return handle;
         }
         
-        try {
-            return callClaudeAPI(userMessage, apiKey, apiUrl, model, maxTokens, temperature);
-        } catch (Exception e) {
-            logger.error("调用Claude API时发生错误", e);
-            throw new Exception("获取Claude回复失败: " + e.getMessage());
+        ConversationContext conversation = options.getConversation();
+        if (conversation != null) {
+            conversation.useTokenCounter(tokenCounter);
         }
-    }
-    
-    private String getGenericResponse(String userMessage) throws Exception {
-        String apiKey = configManager.getGenericApiKey();
-        String apiUrl = configManager.getGenericApiUrl();
-        String model = configManager.getGenericModel();
-        int maxTokens = configManager.getGenericMaxTokens();
-        double temperature = configManager.getGenericTemperature();
+        List<ChatMessage> history = conversation != null && provider.supportsConversation()
+            ? conversation.assemble(promptLimit - promptTokens)
+            : Collections.emptyList();
         
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new Exception("通用API Key未配置，请在设置中配置");
-        }
+        String requestKey = ResponseCache.key(userMessage, systemPrompt, history, settings);
+        boolean useCache = !options.isBypassCache() && responseCache.isEnabled();
         
-        if (apiUrl == null || apiUrl.trim().isEmpty()) {
-            throw new Exception("通用API URL未配置，请在设置中配置");
+        // 相同的问题直接使用缓存的回答
+        if (useCache) {
+            String cached = responseCache.get(requestKey);
+            if (cached != null) {
+                logger.debug("命中回答缓存");
+                if (listener != null) {
+                    listener.onDelta(cached);
+                    listener.onComplete(cached);
+                }
+                AIRequestHandle handle = new AIRequestHandle();
+                handle.complete(cached);
+                remember(conversation, userMessage, cached);
+                return handle;
+            }
         }
         
-        try {
-            return callOpenAIAPI(userMessage, apiKey, apiUrl, model, maxTokens, temperature);
-        } catch (Exception e) {
-            logger.error("调用通用API时发生错误", e);
-            throw new Exception("获取通用API回复失败: " + e.getMessage());
+        List<AIProvider> chain = failoverChain(config, provider);
+        Deadline.Profile timeoutProfile = options.getTimeoutProfile();
+        AIRequestHandle handle = coalescer.execute(requestKey, listener, upstreamListener -> {
+            AIRequestHandle upstream = chain.size() > 1
+                ? new HedgedRequest(chain, (candidate, attemptListener) ->
+                    startCall(config, candidate, history, userMessage, timeoutProfile, useCache, attemptListener),
+                    config.hedgeDelayMs, upstreamListener).start()
+                : startCall(config, provider, history, userMessage, timeoutProfile, useCache, upstreamListener);
+            return upstream;
+        });
+        if (conversation != null) {
+            handle.getFuture().thenAccept(text -> remember(conversation, userMessage, text));
         }
+        return handle;
     }
     
-    private String callOpenAIAPI(String userMessage, String apiKey, String apiUrl, 
-                                String model, int maxTokens, double temperature) throws Exception {
-        
-        String requestBody = buildRequestBody(userMessage, model, maxTokens, temperature);
-        RequestBody body = RequestBody.create(
-            requestBody,
-            MediaType.get("application/json; charset=utf-8")
-        );
-        
-        Request request = new Request.Builder()
-            .url(apiUrl)
-            .addHeader("Authorization", "Bearer " + apiKey)
-            .addHeader("Content-Type", "application/json")
-            .post(body)
-            .build();
-        
-        // 发送请求
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "未知错误";
-                throw new Exception("API请求失败: " + response.code() + " - " + errorBody);
+    /**
+     * 主提供商加上配置的故障转移提供商，未配置API Key的提供商会被跳过
+     */
+    private List<AIProvider> failoverChain(Snapshot config, AIProvider primary) {
+        List<AIProvider> chain = new ArrayList<>();
+        chain.add(primary);
+        for (String provider : config.failoverProviders) {
+            String name = provider.trim().toLowerCase();
+            if (chain.stream().anyMatch(p -> p.getId().equals(name))) {
+                continue;
+            }
+            try {
+                chain.add(providers.get(name));
+            } catch (Exception e) {
+                logger.debug("跳过故障转移提供商{}: {}", name, e.getMessage());
             }
-            
-            String responseBody = response.body().string();
-            return parseResponse(responseBody);
-            
-        } catch (IOException e) {
-            throw new Exception("网络请求失败: " + e.getMessage());
         }
+        return chain;
+    }
+    
+    /**
+     * 单个问题可用的Token数：上下文窗口减去为回答预留的max_tokens和系统提示词，
+     * 多轮对话时问题之外的剩余部分留给历史消息
+     */
+    private int promptTokenLimit(Snapshot config, ProviderSettings settings, TokenCounter tokenCounter) {
+        int contextWindow = config.contextWindow > 0
+            ? config.contextWindow
+            : ModelLimits.contextWindow(settings.getModel());
+        int limit = contextWindow - settings.getMaxTokens()
+            - tokenCounter.count(config.systemPrompt) - ChatMessage.OVERHEAD_TOKENS * 2
+            - ModelLimits.RESERVED_TOKENS;
+        return Math.max(limit, 0);
+    }
+    
+    /**
+     * 按当前提供商的模型计算文本的Token数，供输入框实时显示
+     */
+    public int countTokens(String text) {
+        return BpeTokenizer.forModel(currentSettings(snapshot()).getModel()).count(text);
+    }
+    
+    /**
+     * 当前提供商下单个问题允许的最大Token数
+     */
+    public int getPromptTokenLimit() {
+        Snapshot config = snapshot();
+        ProviderSettings settings = currentSettings(config);
+        return promptTokenLimit(config, settings, BpeTokenizer.forModel(settings.getModel()));
     }
     
-    private String buildRequestBody(String userMessage, String model, int maxTokens, double temperature) {
+    private ProviderSettings currentSettings(Snapshot config) {
         try {
-            StringBuilder requestBody = new StringBuilder();
-            requestBody.append("{");
-            requestBody.append("\"model\":\"").append(model).append("\",");
-            requestBody.append("\"messages\":[");
-            requestBody.append("{\"role\":\"system\",\"content\":\"你是一个有用的AI助手，请用中文回答问题。\"},");
-            requestBody.append("{\"role\":\"user\",\"content\":\"").append(escapeJson(userMessage)).append("\"}");
-            requestBody.append("],");
-            requestBody.append("\"max_tokens\":").append(maxTokens).append(",");
-            requestBody.append("\"temperature\":").append(temperature).append(",");
-            requestBody.append("\"stream\":false");
-            requestBody.append("}");
-            
-            return requestBody.toString();
+            return providers.settings(config.provider);
         } catch (Exception e) {
-            logger.error("构建请求体时发生错误", e);
-            throw new RuntimeException("构建请求体失败", e);
+            // 未知的提供商在发送时会报错，这里按OpenAI的参数计算
+            return new ProviderSettings("openai", "OpenAI", "", "", configManager.getOpenaiModel(),
+                configManager.getOpenaiMaxTokens(), configManager.getOpenaiTemperature());
         }
     }
     
-    private String parseResponse(String responseBody) throws Exception {
-        try {
-            JsonNode rootNode = objectMapper.readTree(responseBody);
-            
-            if (rootNode.has("error")) {
-                String errorMessage = rootNode.get("error").get("message").asText();
-                throw new Exception("API返回错误: " + errorMessage);
-            }
-            
-            JsonNode choices = rootNode.get("choices");
-            if (choices != null && choices.isArray() && choices.size() > 0) {
-                JsonNode firstChoice = choices.get(0);
-                JsonNode message = firstChoice.get("message");
-                if (message != null && message.has("content")) {
-                    return message.get("content").asText();
-                }
-            }
-            
-            throw new Exception("无法解析API响应");
-            
-        } catch (Exception e) {
-            logger.error("解析API响应时发生错误", e);
-            throw new Exception("解析API响应失败: " + e.getMessage());
+    private void remember(ConversationContext conversation, String userMessage, String answer) {
+        if (conversation != null && answer != null && !answer.isEmpty()) {
+            conversation.addExchange(userMessage != null ? userMessage : "", answer);
         }
     }
     
     /**
-     * 转义JSON字符串
+     * 请求过程中用到的全局配置，配置版本变化时重新读取，其余时间不再访问ConfigManager
      */
-    private String escapeJson(String text) {
-        if (text == null) {
-            return "";
+    private Snapshot snapshot() {
+        long revision = configManager.getRevision();
+        Snapshot current = snapshot;
+        if (current == null || current.revision != revision) {
+            current = new Snapshot(configManager, revision);
+            snapshot = current;
         }
-        
-        return text.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\b", "\\b")
-                  .replace("\f", "\\f")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+        return current;
     }
     
     /**
-     * 调用Claude API
+     * 发起一次上游调用，listener为空时使用普通请求，否则使用流式请求
+     * 每次发送（包括重试）从提供商的端点池中选择一个API Key；请求先经过该Key的客户端限流排队，
+     * 限流、服务端错误、网络中断和单次发送超时在尚未输出内容时按退避策略重试，连续失败的提供商会被熔断；
+     * 整个请求（包括重试）受timeoutProfile对应的总时限约束
+     * 回答按实际作答的提供商写入缓存，故障转移或对冲时其他提供商的回答不会记在主提供商名下
      */
-    private String callClaudeAPI(String userMessage, String apiKey, String apiUrl, 
-                               String model, int maxTokens, double temperature) throws Exception {
-        
-        // 构建Claude请求体
-        String requestBody = buildClaudeRequestBody(userMessage, model, maxTokens, temperature);
-        
-        // 创建HTTP请求
-        RequestBody body = RequestBody.create(
-            requestBody,
-            MediaType.get("application/json; charset=utf-8")
-        );
+    private AIRequestHandle startCall(Snapshot config, AIProvider provider, List<ChatMessage> history,
+                                      String userMessage, Deadline.Profile timeoutProfile, boolean useCache,
+                                      StreamListener listener) {
+        AIRequestHandle handle = new AIRequestHandle();
+        ProviderSettings settings = provider.getSettings();
+        boolean stream = listener != null && provider.supportsStreaming();
         
-        Request request = new Request.Builder()
-            .url(apiUrl)
-            .addHeader("x-api-key", apiKey)
-            .addHeader("Content-Type", "application/json")
-            .addHeader("anthropic-version", "2023-06-01")
-            .post(body)
-            .build();
+        // 按系统提示词、问题、历史和max_tokens估算本次请求占用的Token额度
+        TokenCounter tokenCounter = BpeTokenizer.forModel(settings.getModel());
+        int promptTokens = tokenCounter.count(config.systemPrompt) + tokenCounter.count(userMessage)
+            + history.stream().mapToInt(ChatMessage::getTokens).sum();
         
-        // 发送请求
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "未知错误";
-                throw new Exception("Claude API请求失败: " + response.code() + " - " + errorBody);
-            }
-            
-            String responseBody = response.body().string();
-            return parseClaudeResponse(responseBody);
-            
-        } catch (IOException e) {
-            throw new Exception("网络请求失败: " + e.getMessage());
+        StreamListener guardedListener = listener != null ? handle.guard(listener) : null;
+        inFlight.add(handle);
+        handle.getFuture().whenComplete((text, throwable) -> inFlight.remove(handle));
+        if (useCache) {
+            String cacheKey = ResponseCache.key(userMessage, config.systemPrompt, history, settings);
+            handle.getFuture().thenAccept(text -> responseCache.put(cacheKey, text));
         }
+        
+        UpstreamCall upstream = new UpstreamCall(provider, endpointPool(provider), config, history,
+            userMessage, stream, handle, guardedListener, promptTokens,
+            settings.getTimeouts(timeoutProfile).start());
+        enqueue(upstream, 0);
+        return handle;
     }
     
     /**
-     * 构建Claude请求体
+     * 提供商的端点池，配置在此期间被修改而无法构建时只使用该提供商本身
      */
-    private String buildClaudeRequestBody(String userMessage, String model, int maxTokens, double temperature) {
+    private EndpointPool endpointPool(AIProvider provider) {
         try {
-            StringBuilder requestBody = new StringBuilder();
-            requestBody.append("{");
-            requestBody.append("\"model\":\"").append(model).append("\",");
-            requestBody.append("\"max_tokens\":").append(maxTokens).append(",");
-            requestBody.append("\"temperature\":").append(temperature).append(",");
-            requestBody.append("\"messages\":[");
-            requestBody.append("{\"role\":\"user\",\"content\":\"").append(escapeJson(userMessage)).append("\"}");
-            requestBody.append("]");
-            requestBody.append("}");
-            
-            return requestBody.toString();
+            return providers.pool(provider.getId());
         } catch (Exception e) {
-            logger.error("构建Claude请求体时发生错误", e);
-            throw new RuntimeException("构建Claude请求体失败", e);
+            return new EndpointPool(Collections.singletonList(provider), EndpointPool.Selection.LEAST_LOADED, 0, 0);
         }
     }
     
     /**
-     * 解析Claude API响应
+     * 选择API Key并申请该Key的限流额度，得到额度后发送请求
      */
-    private String parseClaudeResponse(String responseBody) throws Exception {
-        try {
-            JsonNode rootNode = objectMapper.readTree(responseBody);
-            
-            // 检查是否有错误
-            if (rootNode.has("error")) {
-                String errorMessage = rootNode.get("error").get("message").asText();
-                throw new Exception("Claude API返回错误: " + errorMessage);
+    private void enqueue(UpstreamCall upstream, int retries) {
+        AIRequestHandle handle = upstream.handle;
+        if (handle.isCancelled()) {
+            return;
+        }
+        EndpointPool.Lease lease = upstream.pool.acquire();
+        if (!upstream.config.rateLimitEnabled) {
+            send(upstream, lease, retries);
+            return;
+        }
+        
+        ProviderSettings settings = lease.getProvider().getSettings();
+        CompletableFuture<Void> permit = RateLimiter.forProvider(settings)
+            .acquire(upstream.promptTokens + settings.getMaxTokens());
+        handle.onCancel(() -> {
+            permit.cancel(false);
+            lease.release();
+        });
+        permit.thenRun(() -> send(upstream, lease, retries));
+    }
+    
+    private void send(UpstreamCall upstream, EndpointPool.Lease lease, int retries) {
+        AIProvider provider = lease.getProvider();
+        ProviderSettings settings = provider.getSettings();
+        AIRequestHandle handle = upstream.handle;
+        String label = settings.getLabel();
+        CircuitBreaker breaker = CircuitBreaker.forProvider(settings);
+        if (handle.isCancelled()) {
+            lease.release();
+            return;
+        }
+        if (upstream.deadline.remainingMillis() <= 0) {
+            lease.release();
+            handle.completeExceptionally(new Exception(
+                "获取" + label + "回复失败: 请求超时（" + upstream.deadline.describe(Deadline.Phase.TOTAL) + "）"));
+            return;
+        }
+        if (!breaker.tryAcquire()) {
+            lease.release();
+            long seconds = (breaker.getRemainingOpenMillis() + 999) / 1000;
+            handle.completeExceptionally(new Exception(
+                "获取" + label + "回复失败: 服务连续出错，已暂停请求" + (seconds > 0 ? "，" + seconds + "秒后恢复" : "")));
+            return;
+        }
+        
+        ProviderStats stats = usageStats.forModel(label, settings.getModel());
+        CallRecorder recorder = new CallRecorder(stats, upstream.stream ? upstream.listener : null,
+            BpeTokenizer.forModel(settings.getModel()), upstream.promptTokens);
+        DeadlineWatchdog watchdog = new DeadlineWatchdog(upstream.deadline, upstream.stream);
+        Request request = watchdog.tag(provider.buildRequest(upstream.config.systemPrompt, upstream.history,
+            upstream.userMessage, upstream.stream));
+        long start = System.nanoTime();
+        Call call = httpClient.newCall(request);
+        handle.attach(call);
+        watchdog.start(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                watchdog.finish();
+                if (handle.isCancelled()) {
+                    breaker.release();
+                    lease.release();
+                    return;
+                }
+                recorder.failed();
+                lease.failed(-1, -1);
+                breaker.recordFailure();
+                retryOrFail(upstream, retries, -1, e, "获取" + label + "回复失败: " + networkError(watchdog, upstream, e));
             }
             
-            // 提取回复内容
-            JsonNode content = rootNode.get("content");
-            if (content != null && content.isArray() && content.size() > 0) {
-                JsonNode firstContent = content.get(0);
-                if (firstContent.has("text")) {
-                    return firstContent.get("text").asText();
+            @Override
+            public void onResponse(Call call, Response response) {
+                recorder.responseReceived();
+                try (Response r = response) {
+                    if (upstream.config.rateLimitEnabled) {
+                        RateLimiter.forProvider(settings).update(r);
+                    }
+                    String text = provider.readResponse(r, upstream.stream, watchdog.watch(recorder));
+                    watchdog.finish();
+                    recorder.succeeded(text, upstream.stream);
+                    lease.succeeded((System.nanoTime() - start) / 1_000_000);
+                    breaker.recordSuccess();
+                    // 提供商不支持流式输出时，把完整回复作为一次增量交给监听器
+                    if (!upstream.stream && upstream.listener != null) {
+                        upstream.listener.onDelta(text);
+                        upstream.listener.onComplete(text);
+                    }
+                    handle.complete(text);
+                } catch (Exception e) {
+                    watchdog.finish();
+                    if (handle.isCancelled()) {
+                        breaker.release();
+                        lease.release();
+                        return;
+                    }
+                    recorder.failed();
+                    ApiException apiError = e instanceof ApiException ? (ApiException) e : null;
+                    if (apiError != null) {
+                        lease.failed(apiError.getStatusCode(), apiError.getRetryAfterMillis());
+                    } else {
+                        lease.release();
+                    }
+                    // 还有其他Key可用时，被限流或鉴权失败的Key不影响请求，直接换一个Key发送
+                    boolean switchKey = apiError != null && upstream.pool.hasAvailable()
+                        && (apiError.getStatusCode() == 429 || apiError.getStatusCode() == 401
+                            || apiError.getStatusCode() == 403);
+                    if (switchKey && !handle.hasDelivered()) {
+                        breaker.recordSuccess();
+                        logger.warn("{}返回{}，换用其他API Key", lease.getName(), apiError.getStatusCode());
+                        enqueue(upstream, retries);
+                    } else if (apiError != null && apiError.isRetryable()) {
+                        breaker.recordFailure();
+                        retryOrFail(upstream, retries, apiError.getRetryAfterMillis(), e,
+                            "获取" + label + "回复失败: " + e.getMessage());
+                    } else if (e instanceof IOException) {
+                        breaker.recordFailure();
+                        retryOrFail(upstream, retries, -1, e,
+                            "获取" + label + "回复失败: " + networkError(watchdog, upstream, (IOException) e));
+                    } else {
+                        // 参数、鉴权等错误说明服务本身可以访问，不计入熔断
+                        breaker.recordSuccess();
+                        logger.error("调用{}时发生错误", label, e);
+                        handle.completeExceptionally(new Exception("获取" + label + "回复失败: " + e.getMessage()));
+                    }
                 }
             }
-            
-            throw new Exception("无法解析Claude API响应");
-            
-        } catch (Exception e) {
-            logger.error("解析Claude API响应时发生错误", e);
-            throw new Exception("解析Claude API响应失败: " + e.getMessage());
+        });
+    }
+    
+    /**
+     * 网络错误的说明；被超时监视取消的请求说明超时的阶段
+     */
+    private String networkError(DeadlineWatchdog watchdog, UpstreamCall upstream, IOException e) {
+        Deadline.Phase expired = watchdog.getExpired();
+        if (expired != null) {
+            return "请求超时（" + upstream.deadline.describe(expired) + "）";
+        }
+        return "网络请求失败: " + e.getMessage();
+    }
+    
+    /**
+     * 可以重试时按退避时间重新发送请求，否则以错误结束；等待后会超过总时限时不再重试
+     */
+    private void retryOrFail(UpstreamCall upstream, int retries, long retryAfterMillis,
+                             Exception cause, String message) {
+        AIRequestHandle handle = upstream.handle;
+        String label = upstream.provider.getLabel();
+        long delay = handle.hasDelivered() ? -1 : upstream.config.retryPolicy.delayMillis(retries, retryAfterMillis);
+        if (delay >= upstream.deadline.remainingMillis()) {
+            delay = -1;
+        }
+        if (delay < 0) {
+            logger.error("调用{}时发生错误", label, cause);
+            handle.completeExceptionally(new Exception(message));
+            return;
+        }
+        
+        logger.warn("调用{}失败，{}ms后进行第{}次重试: {}", label, delay, retries + 1, cause.getMessage());
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+            .execute(() -> enqueue(upstream, retries + 1));
+    }
+    
+    /**
+     * 阻塞等待异步请求完成，调用线程被中断时取消请求
+     */
+    private String await(AIRequestHandle handle) throws Exception {
+        try {
+            return handle.getFuture().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new Exception(cause);
+        } catch (InterruptedException e) {
+            handle.cancel();
+            Thread.currentThread().interrupt();
+            throw new Exception("请求已中断");
         }
     }
     
@@ -307,7 +464,8 @@ public class AIService {
     public boolean testConnection() throws Exception {
         try {
             String testMessage = "你好，请回复'连接成功'";
-            String response = getResponse(testMessage);
+            // 连接测试必须真正访问服务端，不能使用缓存的回答
+            String response = await(getResponseAsync(testMessage, null, new RequestOptions().setBypassCache(true)));
             return response != null && !response.trim().isEmpty();
         } catch (Exception e) {
             logger.error("测试API连接时发生错误", e);
@@ -316,22 +474,84 @@ public class AIService {
     }
     
     /**
-     * 获取API使用统计信息
+     * 获取API使用统计信息：按提供商和模型列出请求数、失败数、Token用量、延迟分位数和输出速度
      */
     public String getUsageStats() {
-        // 这里可以添加使用统计功能
-        return "使用统计功能待实现";
+        StringBuilder stats = new StringBuilder(usageStats.summary()).append("\n").append(responseCache.getStats());
+        try {
+            EndpointPool pool = providers.pool(snapshot().provider);
+            if (pool.size() > 1) {
+                stats.append("\n").append(pool.describe());
+            }
+        } catch (Exception e) {
+            logger.debug("获取API Key状态失败: {}", e.getMessage());
+        }
+        return stats.toString();
     }
     
     /**
      * 清理资源
+     * 连接池和调度器由HttpClientManager统一管理，这里只取消本服务发出的请求
      */
     public void cleanup() {
-        if (httpClient != null) {
-            httpClient.dispatcher().executorService().shutdown();
-            httpClient.connectionPool().evictAll();
+        inFlight.forEach(AIRequestHandle::cancel);
+        inFlight.clear();
+    }
+    
+    /**
+     * 某个配置版本下与提供商无关的请求设置
+     */
+    private static final class Snapshot {
+        private final long revision;
+        private final String provider;
+        private final String systemPrompt;
+        private final int contextWindow;
+        private final List<String> failoverProviders;
+        private final long hedgeDelayMs;
+        private final boolean rateLimitEnabled;
+        private final RetryPolicy retryPolicy;
+        
+        Snapshot(ConfigManager configManager, long revision) {
+            this.revision = revision;
+            this.provider = configManager.getAIProvider().toLowerCase();
+            this.systemPrompt = configManager.getAISystemPrompt();
+            this.contextWindow = configManager.getAIContextWindow();
+            this.failoverProviders = Collections.unmodifiableList(
+                new ArrayList<>(configManager.getAIFailoverProviders()));
+            this.hedgeDelayMs = configManager.getAIHedgeDelayMs();
+            this.rateLimitEnabled = configManager.isRateLimitEnabled();
+            this.retryPolicy = RetryPolicy.fromConfig(configManager);
+        }
+    }
+    
+    /**
+     * 一次上游调用在重试之间保持不变的部分
+     */
+    private static final class UpstreamCall {
+        private final AIProvider provider;
+        private final EndpointPool pool;
+        private final Snapshot config;
+        private final List<ChatMessage> history;
+        private final String userMessage;
+        private final boolean stream;
+        private final AIRequestHandle handle;
+        private final StreamListener listener;
+        private final int promptTokens;
+        private final Deadline deadline;
+        
+        UpstreamCall(AIProvider provider, EndpointPool pool, Snapshot config, List<ChatMessage> history,
+                     String userMessage, boolean stream, AIRequestHandle handle, StreamListener listener,
+                     int promptTokens, Deadline deadline) {
+            this.provider = provider;
+            this.pool = pool;
+            this.config = config;
+            this.history = history;
+            this.userMessage = userMessage;
+            this.stream = stream;
+            this.handle = handle;
+            this.listener = listener;
+            this.promptTokens = promptTokens;
+            this.deadline = deadline;
         }
     }
 }
-
-
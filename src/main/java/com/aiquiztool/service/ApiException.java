@@ -0,0 +1,44 @@
+package com.aiquiztool.service;
+
+import okhttp3.Response;
+
+/**
+ * 服务端返回非2xx状态码时抛出的异常
+ * @author Tang En Dong
+ */
+public class ApiException extends Exception {
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+    
+    public ApiException(String message, int statusCode, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    /**
+     * 根据响应创建异常，读取响应中的Retry-After
+     */
+    public static ApiException of(String message, Response response) {
+        return new ApiException(message, response.code(), RetryPolicy.retryAfterMillis(response));
+    }
+    
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    /**
+     * 服务端通过Retry-After要求的等待时间，没有时返回-1
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+    
+    /**
+     * 限流、超时和服务端错误可以重试，参数和鉴权错误重试也不会成功
+     */
+    public boolean isRetryable() {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+}
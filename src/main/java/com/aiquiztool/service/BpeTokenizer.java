@@ -0,0 +1,429 @@
+package com.aiquiztool.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 本地BPE分词器，用于在发送请求前计算Token数
+ * 词表使用tiktoken格式（每行“Base64编码的字节序列 空格 序号”），优先使用 ~/.aiquiztool/tokenizer/ 下的文件，
+ * 否则使用随程序打包在类路径 /tokenizer/ 下的gzip压缩词表
+ * 词表在后台线程中加载，加载完成前按估算值计数，调用方（包括界面线程）不会因加载词表而阻塞
+ * Claude没有公开词表，按cl100k计算，结果与实际相差不大
+ * @author Tang En Dong
+ */
+public class BpeTokenizer implements TokenCounter {
+    private static final Logger logger = LoggerFactory.getLogger(BpeTokenizer.class);
+    
+    private static final String USER_TOKENIZER_DIR = System.getProperty("user.home") + File.separator
+        + ".aiquiztool" + File.separator + "tokenizer";
+    private static final int MAX_CACHED_PIECES = 20000;
+    
+    /**
+     * 词表编码
+     */
+    enum Encoding {
+        CL100K("cl100k_base",
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+            + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+"),
+        O200K("o200k_base",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+"
+            + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*"
+            + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+        
+        private final String fileName;
+        private final Pattern pattern;
+        
+        Encoding(String name, String regex) {
+            this.fileName = name + ".tiktoken";
+            // tiktoken的\s按Unicode定义，包含全角空格等字符
+            this.pattern = Pattern.compile(regex, Pattern.UNICODE_CHARACTER_CLASS);
+        }
+    }
+    
+    /**
+     * 使用o200k_base的模型系列，其余模型按cl100k_base计数
+     */
+    private static final String[] O200K_MODEL_PREFIXES = {
+        "gpt-5", "gpt-4.5", "gpt-4.1", "gpt-4o", "chatgpt-4o", "gpt-oss", "o1", "o3", "o4"
+    };
+    
+    private static final Map<Encoding, LazyCounter> instances = new EnumMap<>(Encoding.class);
+    
+    static {
+        for (Encoding encoding : Encoding.values()) {
+            instances.put(encoding, new LazyCounter(encoding));
+        }
+    }
+    
+    private final Pattern pattern;
+    private final RankTable ranks;
+    private final Map<String, Integer> pieceCache;
+    
+    private BpeTokenizer(Pattern pattern, RankTable ranks) {
+        this.pattern = pattern;
+        this.ranks = ranks;
+        // 只保留最近用到的片段，常用词不会因缓存满而被整体清掉
+        this.pieceCache = new LinkedHashMap<String, Integer>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > MAX_CACHED_PIECES;
+            }
+        };
+    }
+    
+    /**
+     * 获取与模型匹配的计数器，立即返回；词表尚未加载时在后台开始加载，加载完成前按估算值计数
+     * 同一编码始终返回同一个计数器
+     */
+    public static TokenCounter forModel(String model) {
+        LazyCounter counter = instances.get(encodingFor(model));
+        counter.startLoading();
+        return counter;
+    }
+    
+    /**
+     * 在后台预先加载模型的词表，启动时调用，使用户输入时词表已经就绪
+     */
+    public static void preload(String model) {
+        forModel(model);
+    }
+    
+    /**
+     * 等待词表加载完成并返回实际使用的计数器，供不在界面线程中运行的代码和测试使用
+     */
+    static TokenCounter loaded(String model) {
+        LazyCounter counter = instances.get(encodingFor(model));
+        counter.startLoading();
+        return counter.loading.join();
+    }
+    
+    /**
+     * 按模型名选择编码，与tiktoken的模型前缀表一致；带服务商前缀的名称（如openai/gpt-4o）只看最后一段
+     */
+    static Encoding encodingFor(String model) {
+        String name = model != null ? model.toLowerCase() : "";
+        name = name.substring(name.lastIndexOf('/') + 1);
+        for (String prefix : O200K_MODEL_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return Encoding.O200K;
+            }
+        }
+        return Encoding.CL100K;
+    }
+    
+    private static TokenCounter load(Encoding encoding) {
+        File userFile = new File(USER_TOKENIZER_DIR, encoding.fileName);
+        String bundled = "/tokenizer/" + encoding.fileName + ".gz";
+        if (!userFile.isFile() && BpeTokenizer.class.getResource(bundled) == null) {
+            // 词表随程序打包，找不到说明打包有误；单元测试会检查词表已打包
+            logger.error("类路径中缺少词表{}，Token数将使用估算值", bundled);
+            return new HeuristicTokenCounter();
+        }
+        
+        try (InputStream in = userFile.isFile()
+                ? new FileInputStream(userFile)
+                : new GZIPInputStream(BpeTokenizer.class.getResourceAsStream(bundled), 1 << 16)) {
+            long start = System.currentTimeMillis();
+            RankTable table = RankTable.read(in);
+            logger.info("已加载词表{}，共{}项，耗时{}ms", encoding.fileName, table.size(),
+                System.currentTimeMillis() - start);
+            return new BpeTokenizer(encoding.pattern, table);
+        } catch (Exception e) {
+            logger.warn("加载词表{}失败，Token数将使用估算值", encoding.fileName, e);
+            return new HeuristicTokenCounter();
+        }
+    }
+    
+    @Override
+    public int count(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        
+        int total = 0;
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            String piece = matcher.group();
+            Integer cached;
+            synchronized (pieceCache) {
+                cached = pieceCache.get(piece);
+            }
+            if (cached == null) {
+                cached = countPiece(piece.getBytes(StandardCharsets.UTF_8));
+                synchronized (pieceCache) {
+                    pieceCache.put(piece, cached);
+                }
+            }
+            total += cached;
+        }
+        return total;
+    }
+    
+    /**
+     * 对单个预分词片段做字节对合并，只需要合并后的片段数，不生成Token序号
+     * 各段用链表相连，相邻两段的合并候选按（序号, 位置）放入小根堆，每次合并序号最小、位置最靠左的一对，
+     * 结果与逐轮扫描所有相邻段相同；不含标点的整段中文是一个很长的片段，逐轮扫描是平方复杂度
+     */
+    private int countPiece(byte[] bytes) {
+        int length = bytes.length;
+        if (length == 1 || ranks.get(bytes, 0, length) >= 0) {
+            return 1;
+        }
+        
+        // 每段以起始位置标识：next[i]为后一段的起始位置（最后一段为length，已并入前一段时为-1），
+        // prev[i]为前一段的起始位置，pairRanks[i]为第i段与后一段合并后的序号（不在词表中时为-1）
+        int[] next = new int[length];
+        int[] prev = new int[length];
+        int[] pairRanks = new int[length];
+        for (int i = 0; i < length; i++) {
+            next[i] = i + 1;
+            prev[i] = i - 1;
+        }
+        // 初始的length-1个候选，加上每次合并至多新增两个
+        long[] heap = new long[3 * length];
+        int heapSize = 0;
+        for (int i = 0; i < length; i++) {
+            pairRanks[i] = pairRank(bytes, next, i);
+            heapSize = push(heap, heapSize, pairRanks[i], i);
+        }
+        
+        int parts = length;
+        while (heapSize > 0) {
+            long top = heap[0];
+            heapSize = pop(heap, heapSize);
+            int rank = (int) (top >>> 32);
+            int start = (int) top;
+            // 该段已并入前一段，或者后一段已经变化，候选作废
+            if (next[start] < 0 || pairRanks[start] != rank) {
+                continue;
+            }
+            
+            int removed = next[start];
+            next[start] = next[removed];
+            if (next[start] < length) {
+                prev[next[start]] = start;
+            }
+            next[removed] = -1;
+            parts--;
+            
+            pairRanks[start] = pairRank(bytes, next, start);
+            heapSize = push(heap, heapSize, pairRanks[start], start);
+            int before = prev[start];
+            if (before >= 0) {
+                pairRanks[before] = pairRank(bytes, next, before);
+                heapSize = push(heap, heapSize, pairRanks[before], before);
+            }
+        }
+        return parts;
+    }
+    
+    private int pairRank(byte[] bytes, int[] next, int start) {
+        int end = next[start];
+        if (end >= bytes.length) {
+            return -1;
+        }
+        return ranks.get(bytes, start, next[end] - start);
+    }
+    
+    /**
+     * 候选按序号在高32位、位置在低32位存为long，数值越小越先合并；不在词表中的组合不入堆
+     */
+    private static int push(long[] heap, int size, int rank, int start) {
+        if (rank < 0) {
+            return size;
+        }
+        long value = (long) rank << 32 | start;
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+        return size + 1;
+    }
+    
+    private static int pop(long[] heap, int size) {
+        size--;
+        long value = heap[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+        return size;
+    }
+    
+    /**
+     * 按编码延迟加载的计数器，加载完成后转交给加载结果
+     */
+    private static final class LazyCounter implements TokenCounter {
+        private static final TokenCounter ESTIMATE = new HeuristicTokenCounter();
+        
+        private final Encoding encoding;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CompletableFuture<TokenCounter> loading = new CompletableFuture<>();
+        private volatile TokenCounter delegate = ESTIMATE;
+        
+        LazyCounter(Encoding encoding) {
+            this.encoding = encoding;
+        }
+        
+        void startLoading() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            Thread thread = new Thread(() -> {
+                try {
+                    TokenCounter counter = load(encoding);
+                    delegate = counter;
+                    loading.complete(counter);
+                } catch (RuntimeException | Error e) {
+                    loading.completeExceptionally(e);
+                    throw e;
+                }
+            }, "tokenizer-loader-" + encoding.name().toLowerCase());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        @Override
+        public int count(CharSequence text) {
+            return delegate.count(text);
+        }
+    }
+    
+    /**
+     * 字节序列到序号的开放寻址哈希表，所有字节序列存放在同一个数组中，
+     * 查询时直接比较原始字节，不需要为每次查询创建键对象
+     */
+    private static final class RankTable {
+        private byte[] pool = new byte[1 << 20];
+        private int poolSize = 0;
+        private int[] offsets = new int[1 << 17];
+        private int[] lengths = new int[1 << 17];
+        private int[] ranks = new int[1 << 17];
+        private int count = 0;
+        private int[] slots;
+        
+        static RankTable read(InputStream in) throws IOException {
+            RankTable table = new RankTable();
+            Base64.Decoder decoder = Base64.getDecoder();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                byte[] token = decoder.decode(line.substring(0, space));
+                int rank = Integer.parseInt(line.substring(space + 1).trim());
+                table.add(token, rank);
+            }
+            table.buildIndex();
+            return table;
+        }
+        
+        int size() {
+            return count;
+        }
+        
+        private void add(byte[] token, int rank) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                ranks = Arrays.copyOf(ranks, count * 2);
+            }
+            if (poolSize + token.length > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + token.length));
+            }
+            System.arraycopy(token, 0, pool, poolSize, token.length);
+            offsets[count] = poolSize;
+            lengths[count] = token.length;
+            ranks[count] = rank;
+            poolSize += token.length;
+            count++;
+        }
+        
+        private void buildIndex() {
+            int capacity = Integer.highestOneBit(Math.max(count, 1) * 2) << 1;
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            int mask = capacity - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = hash(pool, offsets[i], lengths[i]) & mask;
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = i;
+            }
+        }
+        
+        /**
+         * 查询字节序列的序号，不在词表中时返回-1
+         */
+        int get(byte[] bytes, int offset, int length) {
+            int mask = slots.length - 1;
+            int slot = hash(bytes, offset, length) & mask;
+            int index;
+            while ((index = slots[slot]) >= 0) {
+                if (lengths[index] == length && equalBytes(bytes, offset, offsets[index], length)) {
+                    return ranks[index];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+        
+        private boolean equalBytes(byte[] bytes, int offset, int poolOffset, int length) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[offset + i] != pool[poolOffset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static int hash(byte[] bytes, int offset, int length) {
+            int h = 0x811C9DC5;
+            for (int i = 0; i < length; i++) {
+                h = (h ^ (bytes[offset + i] & 0xFF)) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
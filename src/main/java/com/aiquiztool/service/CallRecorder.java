@@ -0,0 +1,81 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.service.stats.ProviderStats;
+
+/**
+ * 记录单次上游调用（每次重试各一个）的耗时和Token用量，并把回调转发给调用方的监听器
+ * 回调都在OkHttp读取响应的线程上按顺序发生
+ * @author Tang En Dong
+ */
+class CallRecorder implements StreamListener {
+
+    private final ProviderStats stats;
+    private final StreamListener listener;
+    private final TokenCounter tokenCounter;
+    private final int promptTokens;
+    private final long startNanos = System.nanoTime();
+    private long headersNanos;
+    private long firstDeltaNanos;
+    private TokenUsage usage;
+    
+    /**
+     * @param listener 流式请求时调用方的监听器，普通请求时为null
+     * @param promptTokens 本地估算的输入Token数，服务端没有返回用量时使用
+     */
+    CallRecorder(ProviderStats stats, StreamListener listener, TokenCounter tokenCounter, int promptTokens) {
+        this.stats = stats;
+        this.listener = listener;
+        this.tokenCounter = tokenCounter;
+        this.promptTokens = promptTokens;
+    }
+    
+    /**
+     * 收到响应头
+     */
+    void responseReceived() {
+        headersNanos = System.nanoTime();
+    }
+    
+    @Override
+    public void onDelta(String delta) {
+        if (firstDeltaNanos == 0) {
+            firstDeltaNanos = System.nanoTime();
+        }
+        if (listener != null) {
+            listener.onDelta(delta);
+        }
+    }
+    
+    @Override
+    public void onUsage(TokenUsage usage) {
+        this.usage = usage;
+        if (listener != null) {
+            listener.onUsage(usage);
+        }
+    }
+    
+    @Override
+    public void onComplete(String fullText) {
+        if (listener != null) {
+            listener.onComplete(fullText);
+        }
+    }
+    
+    /**
+     * 调用成功；流式响应的首字节时间取第一段内容到达的时间，普通响应取响应头到达的时间
+     */
+    void succeeded(String text, boolean stream) {
+        long end = System.nanoTime();
+        long firstByte = stream && firstDeltaNanos != 0 ? firstDeltaNanos : headersNanos != 0 ? headersNanos : end;
+        TokenUsage recorded = usage != null ? usage : new TokenUsage(promptTokens, tokenCounter.count(text));
+        stats.recordSuccess(millisSinceStart(firstByte), millisSinceStart(end), recorded, stream);
+    }
+    
+    void failed() {
+        stats.recordFailure();
+    }
+    
+    private long millisSinceStart(long nanos) {
+        return (nanos - startNanos) / 1_000_000;
+    }
+}
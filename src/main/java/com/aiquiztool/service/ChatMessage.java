@@ -0,0 +1,38 @@
+package com.aiquiztool.service;
+
+/**
+ * 对话中的一条消息，创建时计算并缓存其Token数
+ * @author Tang En Dong
+ */
+public class ChatMessage {
+    
+    /**
+     * 每条消息的格式开销（角色、分隔符）
+     */
+    public static final int OVERHEAD_TOKENS = 4;
+    
+    private final String role;
+    private final String content;
+    private final int tokens;
+    
+    public ChatMessage(String role, String content, TokenCounter tokenCounter) {
+        this.role = role;
+        this.content = content;
+        this.tokens = tokenCounter.count(content) + OVERHEAD_TOKENS;
+    }
+    
+    /**
+     * user或assistant
+     */
+    public String getRole() {
+        return role;
+    }
+    
+    public String getContent() {
+        return content;
+    }
+    
+    public int getTokens() {
+        return tokens;
+    }
+}
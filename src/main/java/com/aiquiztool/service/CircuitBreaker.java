@@ -0,0 +1,143 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个提供商的熔断器
+ * 连续失败达到阈值后熔断，熔断期间的请求直接失败；熔断时间过后放行一个试探请求，
+ * 试探成功则恢复，失败则继续熔断
+ * @author Tang En Dong
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED("正常"),
+        OPEN("熔断"),
+        HALF_OPEN("试探中");
+        
+        private final String label;
+        
+        State(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    
+    private final String label;
+    private final ConfigManager configManager;
+    
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean trialInFlight = false;
+    
+    private CircuitBreaker(String label) {
+        this.label = label;
+        this.configManager = ConfigManager.getInstance();
+    }
+    
+    /**
+     * 获取提供商对应的熔断器，同一提供商的所有请求共享
+     */
+    public static CircuitBreaker forProvider(ProviderSettings settings) {
+        return breakers.computeIfAbsent(settings.getProvider(), provider -> new CircuitBreaker(settings.getLabel()));
+    }
+    
+    /**
+     * 所有提供商的状态描述，用于界面显示
+     */
+    public static String describeAll() {
+        StringBuilder description = new StringBuilder();
+        breakers.values().stream()
+            .sorted((a, b) -> a.label.compareTo(b.label))
+            .forEach(breaker -> {
+                if (description.length() > 0) {
+                    description.append("；");
+                }
+                description.append(breaker.describe());
+            });
+        return description.toString();
+    }
+    
+    /**
+     * 是否有提供商处于熔断或试探状态
+     */
+    public static boolean anyOpen() {
+        return breakers.values().stream().anyMatch(breaker -> breaker.getState() != State.CLOSED);
+    }
+    
+    /**
+     * 请求发出前调用，返回false表示熔断中，请求应直接失败
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case OPEN:
+                if (getRemainingOpenMillis() > 0) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+    
+    synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+    
+    synchronized void recordFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= configManager.getBreakerFailureThreshold()) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * 请求被取消、没有得到结果时调用，释放试探名额
+     */
+    synchronized void release() {
+        trialInFlight = false;
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * 距离放行试探请求还有多久，未熔断时返回0
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        long openMillis = configManager.getBreakerOpenSeconds() * 1000L;
+        return Math.max(openedAt + openMillis - System.currentTimeMillis(), 0);
+    }
+    
+    public synchronized String describe() {
+        if (state == State.OPEN) {
+            return label + ": " + state.getLabel() + "（" + (getRemainingOpenMillis() + 999) / 1000 + "秒后试探）";
+        }
+        return label + ": " + state.getLabel();
+    }
+}
@@ -0,0 +1,311 @@
+package com.aiquiztool.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 补全响应解析器
+ * 基于JsonParser逐个读取token，只提取回复文本、usage和error，
+ * 其余字段直接跳过，不构建JsonNode树
+ * @author Tang En Dong
+ */
+public class CompletionParser {
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    /**
+     * 解析OpenAI兼容接口的完整响应体
+     */
+    public CompletionResult parseOpenAI(InputStream in) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            return readOpenAI(parser);
+        }
+    }
+    
+    /**
+     * 解析OpenAI兼容接口的一个流式数据块
+     */
+    public CompletionResult parseOpenAIChunk(String data) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            return readOpenAI(parser);
+        }
+    }
+    
+    /**
+     * 解析Claude接口的完整响应体
+     */
+    public CompletionResult parseClaude(InputStream in) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            return readClaude(parser);
+        }
+    }
+    
+    /**
+     * 解析Claude接口的一个流式事件
+     */
+    public CompletionResult parseClaudeEvent(String data) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            return readClaude(parser);
+        }
+    }
+    
+    private CompletionResult readOpenAI(JsonParser parser) throws IOException {
+        CompletionResult result = new CompletionResult();
+        expectObject(parser);
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            
+            switch (field) {
+                case "error":
+                    result.setError(readErrorMessage(parser));
+                    break;
+                case "choices":
+                    readChoices(parser, result);
+                    break;
+                case "usage":
+                    readOpenAIUsage(parser, result);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 只读取第一个choice中message.content（普通响应）或delta.content（流式响应），以及finish_reason
+     */
+    private void readChoices(JsonParser parser, CompletionResult result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (!first || parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            first = false;
+            
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                
+                if (("message".equals(field) || "delta".equals(field))
+                        && parser.currentToken() == JsonToken.START_OBJECT) {
+                    readTextField(parser, result, "content");
+                } else if ("finish_reason".equals(field) && parser.currentToken() == JsonToken.VALUE_STRING) {
+                    result.setFinishReason(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+    
+    private CompletionResult readClaude(JsonParser parser) throws IOException {
+        CompletionResult result = new CompletionResult();
+        expectObject(parser);
+        readClaudeObject(parser, result, true);
+        return result;
+    }
+    
+    /**
+     * 读取Claude响应对象，message_start事件的message字段结构相同，递归读取
+     */
+    private void readClaudeObject(JsonParser parser, CompletionResult result, boolean topLevel) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            
+            switch (field) {
+                case "type":
+                    if (topLevel) {
+                        result.setType(parser.getValueAsString());
+                    }
+                    break;
+                case "error":
+                    result.setError(readErrorMessage(parser));
+                    break;
+                case "content":
+                    readContentBlocks(parser, result);
+                    break;
+                case "delta":
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        readTextField(parser, result, "text");
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "usage":
+                    readClaudeUsage(parser, result);
+                    break;
+                case "message":
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        readClaudeObject(parser, result, false);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * 按顺序拼接content数组中所有块的text字段
+     */
+    private void readContentBlocks(JsonParser parser, CompletionResult result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                readTextField(parser, result, "text");
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    /**
+     * 读取当前对象中指定名称的字符串字段并追加到回复文本，其余字段跳过
+     */
+    private void readTextField(JsonParser parser, CompletionResult result, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            
+            if (name.equals(field) && token == JsonToken.VALUE_STRING) {
+                result.appendText(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    /**
+     * OpenAI的prompt_tokens已包含命中缓存的部分，命中数在prompt_tokens_details.cached_tokens中
+     */
+    private void readOpenAIUsage(JsonParser parser, CompletionResult result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            
+            if (token == JsonToken.VALUE_NUMBER_INT && "prompt_tokens".equals(field)) {
+                result.setInputTokens(parser.getIntValue());
+            } else if (token == JsonToken.VALUE_NUMBER_INT && "completion_tokens".equals(field)) {
+                result.setOutputTokens(parser.getIntValue());
+            } else if (token == JsonToken.START_OBJECT && "prompt_tokens_details".equals(field)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String detail = parser.currentName();
+                    if (parser.nextToken() == JsonToken.VALUE_NUMBER_INT && "cached_tokens".equals(detail)) {
+                        result.setCacheReadTokens(parser.getIntValue());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    /**
+     * Claude的input_tokens不包含缓存读写的部分，这里加在一起，与OpenAI的prompt_tokens含义一致
+     */
+    private void readClaudeUsage(JsonParser parser, CompletionResult result) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        
+        int uncached = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            
+            switch (field) {
+                case "input_tokens":
+                    uncached = parser.getIntValue();
+                    break;
+                case "output_tokens":
+                    result.setOutputTokens(parser.getIntValue());
+                    break;
+                case "cache_read_input_tokens":
+                    result.setCacheReadTokens(parser.getIntValue());
+                    break;
+                case "cache_creation_input_tokens":
+                    result.setCacheWriteTokens(parser.getIntValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        if (uncached >= 0) {
+            result.setInputTokens(uncached + Math.max(result.getCacheReadTokens(), 0)
+                + Math.max(result.getCacheWriteTokens(), 0));
+        }
+    }
+    
+    /**
+     * error字段可能是对象（带message）也可能直接是字符串
+     */
+    private String readErrorMessage(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return "未知错误";
+        }
+        
+        String message = "未知错误";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            
+            if ("message".equals(field) && value == JsonToken.VALUE_STRING) {
+                message = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return message;
+    }
+    
+    private void expectObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "响应不是JSON对象");
+        }
+    }
+}
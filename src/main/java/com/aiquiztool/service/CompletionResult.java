@@ -0,0 +1,121 @@
+package com.aiquiztool.service;
+
+/**
+ * 一次响应（或一个流式事件）中解析出的字段
+ * @author Tang En Dong
+ */
+public class CompletionResult {
+    
+    private String type;
+    private StringBuilder text;
+    private String error;
+    private String finishReason;
+    private int inputTokens = -1;
+    private int outputTokens = -1;
+    private int cacheReadTokens = -1;
+    private int cacheWriteTokens = -1;
+    
+    /**
+     * 事件类型，仅Claude响应携带
+     */
+    public String getType() {
+        return type;
+    }
+    
+    /**
+     * 回复文本，响应中没有文本时为null
+     */
+    public String getText() {
+        return text != null ? text.toString() : null;
+    }
+    
+    public boolean hasText() {
+        return text != null && text.length() > 0;
+    }
+    
+    /**
+     * 服务端返回的错误信息，没有错误时为null
+     */
+    public String getError() {
+        return error;
+    }
+    
+    /**
+     * 结束原因（OpenAI兼容接口的finish_reason），回复尚未结束时为null
+     */
+    public String getFinishReason() {
+        return finishReason;
+    }
+    
+    public boolean hasUsage() {
+        return inputTokens >= 0 || outputTokens >= 0;
+    }
+    
+    /**
+     * 输入Token数（包含缓存读写部分），响应中没有时为-1
+     */
+    public int getInputTokens() {
+        return inputTokens;
+    }
+    
+    /**
+     * 输出Token数，响应中没有时为-1
+     */
+    public int getOutputTokens() {
+        return outputTokens;
+    }
+    
+    /**
+     * 命中提示词缓存的输入Token数，响应中没有时为-1
+     */
+    public int getCacheReadTokens() {
+        return cacheReadTokens;
+    }
+    
+    /**
+     * 写入提示词缓存的输入Token数，响应中没有时为-1
+     */
+    public int getCacheWriteTokens() {
+        return cacheWriteTokens;
+    }
+    
+    public TokenUsage getUsage() {
+        return hasUsage() ? new TokenUsage(Math.max(inputTokens, 0), Math.max(outputTokens, 0),
+            Math.max(cacheReadTokens, 0), Math.max(cacheWriteTokens, 0)) : null;
+    }
+    
+    void setType(String type) {
+        this.type = type;
+    }
+    
+    void appendText(String value) {
+        if (text == null) {
+            text = new StringBuilder(value.length());
+        }
+        text.append(value);
+    }
+    
+    void setError(String error) {
+        this.error = error;
+    }
+    
+    void setFinishReason(String finishReason) {
+        this.finishReason = finishReason;
+    }
+    
+    void setInputTokens(int inputTokens) {
+        this.inputTokens = inputTokens;
+    }
+    
+    void setOutputTokens(int outputTokens) {
+        this.outputTokens = outputTokens;
+    }
+    
+    void setCacheReadTokens(int cacheReadTokens) {
+        this.cacheReadTokens = cacheReadTokens;
+    }
+    
+    void setCacheWriteTokens(int cacheWriteTokens) {
+        this.cacheWriteTokens = cacheWriteTokens;
+    }
+}
@@ -0,0 +1,181 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.provider.AIProvider;
+import com.aiquiztool.service.provider.ProviderRegistry;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接预热
+ * 启动时和聊天窗口打开时向已配置的AI及语音服务主机发送HEAD请求，
+ * AI服务包括当前提供商和故障转移提供商端点池中的所有服务地址，
+ * 提前完成DNS解析、TCP和TLS握手，把连接留在共享连接池中；
+ * 窗口可见期间定期刷新，避免连接因空闲被服务端关闭
+ * @author Tang En Dong
+ */
+public class ConnectionWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+    
+    private static ConnectionWarmer instance;
+    
+    private final ConfigManager configManager;
+    private final OkHttpClient httpClient;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> keepWarmTask;
+    
+    private ConnectionWarmer() {
+        this.configManager = ConfigManager.getInstance();
+        this.httpClient = HttpClientManager.getInstance().newBuilder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+    }
+    
+    public static synchronized ConnectionWarmer getInstance() {
+        if (instance == null) {
+            instance = new ConnectionWarmer();
+        }
+        return instance;
+    }
+    
+    /**
+     * 在后台预热所有已配置的服务主机
+     */
+    public void warmUp() {
+        if (!configManager.isHttpWarmupEnabled()) {
+            return;
+        }
+        
+        for (HttpUrl target : collectTargets()) {
+            warm(target);
+        }
+    }
+    
+    /**
+     * 开始定期刷新连接，聊天窗口显示时调用
+     */
+    public synchronized void startKeepWarm() {
+        if (!configManager.isHttpWarmupEnabled() || keepWarmTask != null) {
+            return;
+        }
+        
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "connection-warmer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        int interval = Math.max(10, configManager.getHttpWarmupIntervalSeconds());
+        keepWarmTask = scheduler.scheduleWithFixedDelay(this::warmUp, 0, interval, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * 停止定期刷新，聊天窗口隐藏时调用
+     */
+    public synchronized void stopKeepWarm() {
+        if (keepWarmTask != null) {
+            keepWarmTask.cancel(false);
+            keepWarmTask = null;
+        }
+    }
+    
+    private void warm(HttpUrl target) {
+        Request request = new Request.Builder()
+            .url(target)
+            .head()
+            .build();
+        
+        long start = System.nanoTime();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.debug("预热连接失败: {} - {}", target.host(), e.getMessage());
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                logger.debug("预热连接完成: {}，耗时 {} ms", target.host(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+    
+    /**
+     * 收集需要预热的主机，同一主机只预热一次
+     */
+    private Collection<HttpUrl> collectTargets() {
+        Map<String, HttpUrl> targets = new LinkedHashMap<>();
+        
+        // 当前提供商和故障转移提供商的所有端点，对冲或切换时连接已经就绪
+        List<String> providerIds = new ArrayList<>();
+        providerIds.add(configManager.getAIProvider().toLowerCase());
+        for (String provider : configManager.getAIFailoverProviders()) {
+            providerIds.add(provider.trim().toLowerCase());
+        }
+        ProviderRegistry registry = ProviderRegistry.getInstance();
+        for (String id : providerIds) {
+            try {
+                for (AIProvider provider : registry.pool(id).getProviders()) {
+                    addTarget(targets, provider.getSettings().getApiUrl());
+                }
+            } catch (Exception e) {
+                logger.debug("跳过预热{}: {}", id, e.getMessage());
+            }
+        }
+        
+        if (configManager.isSpeechEnabled()) {
+            switch (configManager.getSpeechProvider().toLowerCase()) {
+                case "azure":
+                    addTarget(targets, String.format("https://%s.stt.speech.microsoft.com/", configManager.getAzureRegion()));
+                    break;
+                case "google":
+                    addTarget(targets, configManager.getGoogleEndpoint());
+                    break;
+                case "baidu":
+                    addTarget(targets, "https://aip.baidubce.com/");
+                    addTarget(targets, "https://vop.baidu.com/");
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        return targets.values();
+    }
+    
+    private void addTarget(Map<String, HttpUrl> targets, String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return;
+        }
+        
+        HttpUrl parsed = HttpUrl.parse(url.trim());
+        if (parsed == null) {
+            logger.debug("无法解析预热地址: {}", url);
+            return;
+        }
+        
+        HttpUrl root = parsed.newBuilder().encodedPath("/").query(null).build();
+        targets.putIfAbsent(root.scheme() + "://" + root.host() + ":" + root.port(), root);
+    }
+}
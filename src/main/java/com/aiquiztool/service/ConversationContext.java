@@ -0,0 +1,103 @@
+package com.aiquiztool.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 多轮对话上下文
+ * 按顺序保存已完成的问答，每条消息的Token数在加入时计算一次并累加到总数，
+ * 组装请求时只需比较总数与预算，超出时从最早的一轮开始淘汰
+ * 计数器由AIService在每次发送前设为当前模型的计数器，历史与问题长度的检查使用同一个词表
+ * @author Tang En Dong
+ */
+public class ConversationContext {
+    
+    private TokenCounter tokenCounter;
+    private final Deque<ChatMessage> messages = new ArrayDeque<>();
+    private int totalTokens = 0;
+    
+    /**
+     * 第一次发送前还不知道使用的模型，先按估算值计数
+     */
+    public ConversationContext() {
+        this(new HeuristicTokenCounter());
+    }
+    
+    public ConversationContext(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+    
+    /**
+     * 记录一轮完成的问答
+     */
+    public synchronized void addExchange(String question, String answer) {
+        append(new ChatMessage("user", question, tokenCounter));
+        append(new ChatMessage("assistant", answer, tokenCounter));
+    }
+    
+    /**
+     * 取出不超过预算的历史消息，超出预算时按轮淘汰最早的问答
+     * 始终成对淘汰，保证历史以user消息开头并且user/assistant交替出现
+     * 一旦需要淘汰就一次降到预算的3/4以下：每轮只淘汰一问一答会让历史的开头每次都变化，
+     * 服务端的提示词缓存无法命中，多淘汰一些可以让之后几轮的前缀保持不变
+     */
+    public synchronized List<ChatMessage> assemble(int budgetTokens) {
+        int target = totalTokens > budgetTokens ? budgetTokens - budgetTokens / 4 : budgetTokens;
+        while (!messages.isEmpty() && totalTokens > target) {
+            removeOldest();
+            if (!messages.isEmpty() && "assistant".equals(messages.peekFirst().getRole())) {
+                removeOldest();
+            }
+        }
+        return new ArrayList<>(messages);
+    }
+    
+    public synchronized void clear() {
+        messages.clear();
+        totalTokens = 0;
+    }
+    
+    public synchronized boolean isEmpty() {
+        return messages.isEmpty();
+    }
+    
+    /**
+     * 当前保存的历史消息的Token总数
+     */
+    public synchronized int getTokenCount() {
+        return totalTokens;
+    }
+    
+    public synchronized TokenCounter getTokenCounter() {
+        return tokenCounter;
+    }
+    
+    /**
+     * 换用另一个计数器，切换了模型时按新的词表重新计算已有消息的Token数
+     */
+    public synchronized void useTokenCounter(TokenCounter counter) {
+        if (counter == tokenCounter) {
+            return;
+        }
+        tokenCounter = counter;
+        List<ChatMessage> previous = new ArrayList<>(messages);
+        clear();
+        for (ChatMessage message : previous) {
+            append(new ChatMessage(message.getRole(), message.getContent(), counter));
+        }
+    }
+    
+    private void append(ChatMessage message) {
+        messages.addLast(message);
+        totalTokens += message.getTokens();
+    }
+    
+    private void removeOldest() {
+        ChatMessage removed = messages.pollFirst();
+        if (removed != null) {
+            totalTokens -= removed.getTokens();
+        }
+    }
+}
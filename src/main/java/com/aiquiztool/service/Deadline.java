@@ -0,0 +1,144 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+
+/**
+ * 单次AI请求的时限
+ * 建立连接、等待第一段内容和流式输出中的间隔按每次发送计算，总时间从请求开始计算并包含重试；
+ * 各项为0表示不限制
+ * @author Tang En Dong
+ */
+public class Deadline {
+
+    /**
+     * 调用场景，不同场景使用不同的超时配置
+     */
+    public enum Profile {
+        INTERACTIVE("interactive"),
+        BATCH("batch");
+        
+        private final String key;
+        
+        Profile(String key) {
+            this.key = key;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+    }
+    
+    /**
+     * 请求所处的阶段，超时时用于说明原因
+     */
+    public enum Phase {
+        CONNECT("建立连接"),
+        FIRST_BYTE("等待回复"),
+        IDLE("等待后续内容"),
+        TOTAL("整个请求");
+        
+        private final String label;
+        
+        Phase(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private final long connectMillis;
+    private final long firstByteMillis;
+    private final long idleMillis;
+    private final long totalMillis;
+    private final long startNanos = System.nanoTime();
+    
+    public Deadline(long connectMillis, long firstByteMillis, long idleMillis, long totalMillis) {
+        this.connectMillis = connectMillis;
+        this.firstByteMillis = firstByteMillis;
+        this.idleMillis = idleMillis;
+        this.totalMillis = totalMillis;
+    }
+    
+    /**
+     * 各阶段时限的设置，随提供商设置一起解析，每次请求用start从当前时间开始计时
+     */
+    public static final class Limits {
+        
+        /**
+         * 不限制时间
+         */
+        public static final Limits NONE = new Limits(0, 0, 0, 0);
+        
+        private final long connectMillis;
+        private final long firstByteMillis;
+        private final long idleMillis;
+        private final long totalMillis;
+        
+        public Limits(long connectMillis, long firstByteMillis, long idleMillis, long totalMillis) {
+            this.connectMillis = connectMillis;
+            this.firstByteMillis = firstByteMillis;
+            this.idleMillis = idleMillis;
+            this.totalMillis = totalMillis;
+        }
+        
+        /**
+         * 读取提供商在某个场景下的超时配置，提供商单独设置的超时优先
+         */
+        public static Limits fromConfig(ConfigManager configManager, String provider, Profile profile) {
+            String key = profile.getKey();
+            return new Limits(
+                configManager.getTimeoutMillis(key, provider, "connect-ms"),
+                configManager.getTimeoutMillis(key, provider, "first-byte-ms"),
+                configManager.getTimeoutMillis(key, provider, "idle-ms"),
+                configManager.getTimeoutMillis(key, provider, "total-ms"));
+        }
+        
+        public Deadline start() {
+            return new Deadline(connectMillis, firstByteMillis, idleMillis, totalMillis);
+        }
+        
+        /**
+         * 各项时限的摘要，时限相同时相同
+         */
+        String fingerprint() {
+            return connectMillis + "/" + firstByteMillis + "/" + idleMillis + "/" + totalMillis;
+        }
+    }
+    
+    /**
+     * 指定阶段的时限，0表示不限制
+     */
+    public long limitMillis(Phase phase) {
+        switch (phase) {
+            case CONNECT:
+                return connectMillis;
+            case FIRST_BYTE:
+                return firstByteMillis;
+            case IDLE:
+                return idleMillis;
+            default:
+                return totalMillis;
+        }
+    }
+    
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    /**
+     * 距总时限还剩多少毫秒，不限制总时间时返回Long.MAX_VALUE
+     */
+    public long remainingMillis() {
+        return totalMillis > 0 ? totalMillis - elapsedMillis() : Long.MAX_VALUE;
+    }
+    
+    /**
+     * 超时的说明，例如“等待回复超过30秒”
+     */
+    public String describe(Phase phase) {
+        long limit = limitMillis(phase);
+        return phase.getLabel() + "超过" + (limit % 1000 == 0 ? limit / 1000 + "秒" : limit + "毫秒");
+    }
+}
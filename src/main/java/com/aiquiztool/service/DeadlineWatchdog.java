@@ -0,0 +1,187 @@
+package com.aiquiztool.service;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单次发送的超时监视
+ * 阶段切换时安排一次检查；流式输出的每一段内容只更新时间戳，检查时仍未超时就按新的时限再次安排，
+ * 因此不需要为每一段内容重新设置定时；超时后取消OkHttp的Call并记录所处的阶段
+ * @author Tang En Dong
+ */
+class DeadlineWatchdog {
+
+    /**
+     * 应用拦截器在请求离开调度队列、开始执行时执行；在此之前请求只是在排队等待并发名额，
+     * 连接阶段从这里开始计时，排队的时间只计入总时限
+     */
+    static final Interceptor DISPATCH_INTERCEPTOR = chain -> {
+        DeadlineWatchdog watchdog = chain.request().tag(DeadlineWatchdog.class);
+        if (watchdog != null) {
+            watchdog.dispatched();
+        }
+        return chain.proceed(chain.request());
+    };
+    
+    /**
+     * 网络拦截器在连接建立之后、响应头到达之后各执行一次，用来区分连接和等待回复两个阶段
+     */
+    static final Interceptor NETWORK_INTERCEPTOR = chain -> {
+        DeadlineWatchdog watchdog = chain.request().tag(DeadlineWatchdog.class);
+        if (watchdog != null) {
+            watchdog.connected();
+        }
+        Response response = chain.proceed(chain.request());
+        if (watchdog != null) {
+            watchdog.headersReceived();
+        }
+        return response;
+    };
+    
+    private final Deadline deadline;
+    private final boolean stream;
+    // 先写阶段开始时间再写阶段，读取时顺序相反，保证不会用旧的开始时间判断新的阶段
+    private volatile Deadline.Phase phase = Deadline.Phase.CONNECT;
+    private volatile long phaseStartNanos = System.nanoTime();
+    private volatile boolean dispatched = false;
+    private volatile Deadline.Phase expired;
+    private volatile boolean finished = false;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile Call call;
+    
+    DeadlineWatchdog(Deadline deadline, boolean stream) {
+        this.deadline = deadline;
+        this.stream = stream;
+    }
+    
+    /**
+     * 给请求加上标记，使网络拦截器能找到本监视器
+     */
+    Request tag(Request request) {
+        return request.newBuilder().tag(DeadlineWatchdog.class, this).build();
+    }
+    
+    void start(Call call) {
+        this.call = call;
+        check(generation.get());
+    }
+    
+    /**
+     * 包装监听器，每收到一段内容记录一次进展
+     */
+    StreamListener watch(StreamListener listener) {
+        return new StreamListener() {
+            @Override
+            public void onDelta(String delta) {
+                progress();
+                listener.onDelta(delta);
+            }
+            
+            @Override
+            public void onUsage(TokenUsage usage) {
+                listener.onUsage(usage);
+            }
+            
+            @Override
+            public void onComplete(String fullText) {
+                listener.onComplete(fullText);
+            }
+        };
+    }
+    
+    /**
+     * 请求已结束，不再检查
+     */
+    void finish() {
+        finished = true;
+    }
+    
+    /**
+     * 超时的阶段，没有超时时为null
+     */
+    Deadline.Phase getExpired() {
+        return expired;
+    }
+    
+    private void dispatched() {
+        if (phase == Deadline.Phase.CONNECT) {
+            dispatched = true;
+            enter(Deadline.Phase.CONNECT);
+        }
+    }
+    
+    private void connected() {
+        if (phase == Deadline.Phase.CONNECT) {
+            enter(Deadline.Phase.FIRST_BYTE);
+        }
+    }
+    
+    /**
+     * 普通请求的回复随响应头之后一次性返回，此后只受总时限约束；流式请求以第一段内容为准
+     */
+    private void headersReceived() {
+        if (!stream) {
+            enter(Deadline.Phase.TOTAL);
+        }
+    }
+    
+    private void progress() {
+        if (phase == Deadline.Phase.IDLE) {
+            phaseStartNanos = System.nanoTime();
+        } else if (phase != Deadline.Phase.TOTAL) {
+            enter(Deadline.Phase.IDLE);
+        }
+    }
+    
+    /**
+     * 切换阶段，之前安排的检查作废，按新阶段的时限重新安排
+     */
+    private void enter(Deadline.Phase next) {
+        phaseStartNanos = System.nanoTime();
+        phase = next;
+        check(generation.incrementAndGet());
+    }
+    
+    private void check(int scheduledGeneration) {
+        if (finished || expired != null || scheduledGeneration != generation.get()) {
+            return;
+        }
+        Deadline.Phase current = phase;
+        // 排队期间不检查连接阶段的时限
+        boolean timed = current != Deadline.Phase.TOTAL && (current != Deadline.Phase.CONNECT || dispatched);
+        long phaseLimit = timed ? deadline.limitMillis(current) : 0;
+        long phaseRemaining = phaseLimit > 0
+            ? phaseLimit - (System.nanoTime() - phaseStartNanos) / 1_000_000
+            : Long.MAX_VALUE;
+        long totalRemaining = deadline.remainingMillis();
+        
+        if (phaseRemaining <= 0) {
+            expire(current);
+        } else if (totalRemaining <= 0) {
+            expire(Deadline.Phase.TOTAL);
+        } else {
+            long delay = Math.min(phaseRemaining, totalRemaining);
+            // 当前阶段和总时间都不限制时不需要检查，进入下一阶段时会重新安排
+            if (delay != Long.MAX_VALUE) {
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> check(scheduledGeneration));
+            }
+        }
+    }
+    
+    private void expire(Deadline.Phase phase) {
+        synchronized (this) {
+            if (finished || expired != null) {
+                return;
+            }
+            expired = phase;
+        }
+        call.cancel();
+    }
+}
@@ -0,0 +1,208 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.service.provider.AIProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按顺序向多个提供商发送同一个问题
+ * 前一个提供商在限定时间内没有返回内容或者请求失败时，向下一个提供商发送请求；
+ * 最先返回内容的请求胜出，其余请求立即取消
+ * 非流式请求（没有监听器）要到完整回复生成后才有结果，无法区分卡住和正在生成，
+ * 只在失败时转到下一个提供商，不按时间提前发送，避免每个较长的回复都重复付费
+ * @author Tang En Dong
+ */
+class HedgedRequest {
+    private static final Logger logger = LoggerFactory.getLogger(HedgedRequest.class);
+    
+    /**
+     * 向单个提供商发起请求
+     */
+    interface Starter {
+        AIRequestHandle start(AIProvider provider, StreamListener listener);
+    }
+    
+    private final List<AIProvider> chain;
+    private final Starter starter;
+    private final long hedgeDelayMs;
+    private final StreamListener listener;
+    private final AIRequestHandle handle = new AIRequestHandle();
+    private final AIRequestHandle[] attempts;
+    
+    // 以下字段由this保护
+    private int started = 0;
+    private int failed = 0;
+    private int winner = -1;
+    private Throwable firstError;
+    
+    HedgedRequest(List<AIProvider> chain, Starter starter, long hedgeDelayMs, StreamListener listener) {
+        this.chain = chain;
+        this.starter = starter;
+        this.hedgeDelayMs = hedgeDelayMs;
+        this.listener = listener;
+        this.attempts = new AIRequestHandle[chain.size()];
+    }
+    
+    AIRequestHandle start() {
+        handle.onCancel(this::cancelAll);
+        launchNext();
+        return handle;
+    }
+    
+    private void launchNext() {
+        int index;
+        synchronized (this) {
+            if (isFinished() || winner >= 0 || started >= chain.size()) {
+                return;
+            }
+            index = started++;
+        }
+        
+        AIProvider provider = chain.get(index);
+        if (index > 0) {
+            logger.info("{}未及时响应，改为同时请求{}", chain.get(index - 1).getLabel(), provider.getLabel());
+        }
+        
+        AIRequestHandle attempt = starter.start(provider, listener != null ? new AttemptListener(index) : null);
+        synchronized (this) {
+            attempts[index] = attempt;
+        }
+        // 启动期间整个请求已结束（被取消或其他提供商胜出）时，立即取消本次请求
+        if (isFinished() && !isWinner(index)) {
+            attempt.cancel();
+        }
+        attempt.getFuture().whenComplete((text, throwable) -> onAttemptDone(index, text, throwable));
+        
+        if (listener != null && index + 1 < chain.size()) {
+            CompletableFuture.delayedExecutor(hedgeDelayMs, TimeUnit.MILLISECONDS).execute(() -> {
+                synchronized (this) {
+                    // 期间已经因失败转到了下一个提供商，或者已经有提供商返回内容
+                    if (started != index + 1 || winner >= 0) {
+                        return;
+                    }
+                }
+                launchNext();
+            });
+        }
+    }
+    
+    private void onAttemptDone(int index, String text, Throwable throwable) {
+        if (throwable == null) {
+            if (claim(index)) {
+                handle.complete(text);
+            }
+            return;
+        }
+        
+        boolean next = false;
+        boolean exhausted = false;
+        synchronized (this) {
+            if (winner == index) {
+                // 已经开始输出内容的请求失败，不能再切换到其他提供商
+                exhausted = true;
+                firstError = throwable;
+            } else if (winner < 0) {
+                failed++;
+                if (firstError == null) {
+                    firstError = throwable;
+                }
+                next = started < chain.size();
+                exhausted = !next && failed == started;
+            }
+        }
+        
+        if (next) {
+            if (!isFinished()) {
+                logger.warn("{}请求失败，转到下一个提供商: {}", chain.get(index).getLabel(), throwable.getMessage());
+            }
+            launchNext();
+        } else if (exhausted) {
+            handle.completeExceptionally(firstError);
+        }
+    }
+    
+    /**
+     * 尝试让指定请求胜出，胜出后取消其余请求；返回该请求是否为胜出者
+     */
+    private boolean claim(int index) {
+        synchronized (this) {
+            if (winner < 0 && !isFinished()) {
+                winner = index;
+            } else {
+                return winner == index;
+            }
+        }
+        
+        if (index > 0) {
+            logger.info("{}先返回内容，使用其回复", chain.get(index).getLabel());
+        }
+        for (int i = 0; i < attempts.length; i++) {
+            AIRequestHandle attempt = attemptAt(i);
+            if (i != index && attempt != null) {
+                attempt.cancel();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 整个请求是否已结束；取消时先取消各个请求再完成句柄，
+     * 期间各个请求以取消失败回调，此时不能再转到下一个提供商
+     */
+    private boolean isFinished() {
+        return handle.isCancelled() || handle.isDone();
+    }
+    
+    private synchronized boolean isWinner(int index) {
+        return winner == index;
+    }
+    
+    private synchronized AIRequestHandle attemptAt(int index) {
+        return attempts[index];
+    }
+    
+    private void cancelAll() {
+        for (int i = 0; i < attempts.length; i++) {
+            AIRequestHandle attempt = attemptAt(i);
+            if (attempt != null) {
+                attempt.cancel();
+            }
+        }
+    }
+    
+    /**
+     * 单个请求的监听器，只有胜出请求的回调会转发给调用方
+     */
+    private class AttemptListener implements StreamListener {
+        private final int index;
+        
+        AttemptListener(int index) {
+            this.index = index;
+        }
+        
+        @Override
+        public void onDelta(String delta) {
+            if (claim(index)) {
+                listener.onDelta(delta);
+            }
+        }
+        
+        @Override
+        public void onUsage(TokenUsage usage) {
+            if (isWinner(index)) {
+                listener.onUsage(usage);
+            }
+        }
+        
+        @Override
+        public void onComplete(String fullText) {
+            if (isWinner(index)) {
+                listener.onComplete(fullText);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.aiquiztool.service;
+
+/**
+ * 估算Token数
+ * 中日韩文字大致每字一个Token，其余字符大致每4个一个Token
+ * @author Tang En Dong
+ */
+public class HeuristicTokenCounter implements TokenCounter {
+    
+    @Override
+    public int count(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        
+        int wide = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWide(c)) {
+                wide++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return wide + (other + 3) / 4;
+    }
+    
+    private static boolean isWide(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF)     // 中日韩统一表意文字
+            || (c >= 0x3400 && c <= 0x4DBF)     // 扩展A
+            || (c >= 0x3040 && c <= 0x30FF)     // 平假名、片假名
+            || (c >= 0xAC00 && c <= 0xD7AF)     // 韩文音节
+            || (c >= 0x3000 && c <= 0x303F)     // 中文标点
+            || (c >= 0xFF00 && c <= 0xFFEF);    // 全角字符
+    }
+}
@@ -0,0 +1,75 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内共享的HTTP客户端
+ * 各服务通过newBuilder()派生自己的客户端，派生出的客户端共用同一个
+ * 连接池和调度器，TLS会话和HTTP/2连接可以在不同功能之间复用
+ * @author Tang En Dong
+ */
+public class HttpClientManager {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientManager.class);
+    
+    private static HttpClientManager instance;
+    
+    private final OkHttpClient sharedClient;
+    
+    private HttpClientManager() {
+        ConfigManager configManager = ConfigManager.getInstance();
+        int maxIdleConnections = configManager.getHttpMaxIdleConnections();
+        int keepAliveSeconds = configManager.getHttpKeepAliveSeconds();
+        
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(configManager.getHttpMaxRequests());
+        dispatcher.setMaxRequestsPerHost(configManager.getHttpMaxRequestsPerHost());
+        
+        this.sharedClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+            .dispatcher(dispatcher)
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .build();
+        
+        logger.info("共享HTTP客户端初始化完成，空闲连接上限: {}，保活: {}秒，并发上限: {}，单主机并发上限: {}",
+            maxIdleConnections, keepAliveSeconds, dispatcher.getMaxRequests(), dispatcher.getMaxRequestsPerHost());
+    }
+    
+    public static synchronized HttpClientManager getInstance() {
+        if (instance == null) {
+            instance = new HttpClientManager();
+        }
+        return instance;
+    }
+    
+    /**
+     * 共享客户端本身
+     */
+    public OkHttpClient getClient() {
+        return sharedClient;
+    }
+    
+    /**
+     * 派生一个共用连接池和调度器的客户端构建器，可单独调整超时等参数
+     */
+    public OkHttpClient.Builder newBuilder() {
+        return sharedClient.newBuilder();
+    }
+    
+    /**
+     * 退出应用时释放连接和调度线程
+     */
+    public void shutdown() {
+        sharedClient.dispatcher().executorService().shutdown();
+        sharedClient.connectionPool().evictAll();
+        logger.info("共享HTTP客户端已关闭");
+    }
+}
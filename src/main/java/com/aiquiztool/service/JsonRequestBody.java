@@ -0,0 +1,93 @@
+package com.aiquiztool.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 流式JSON请求体
+ * 发送时用JsonGenerator直接把JSON写入OkHttp的请求sink，
+ * 转义由Jackson一次完成，不产生中间字符串，请求体以分块传输发送
+ * 百度语音识别等不接受分块请求体的服务使用{@link #sized(Writer)}：内容只生成一次并保存在内存中，
+ * 请求带Content-Length发送，重试时直接复用这份内容
+ * @author Tang En Dong
+ */
+public class JsonRequestBody extends RequestBody {
+    
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .build();
+    
+    /**
+     * 请求体内容的写出逻辑，分块发送时每次发送（包括重试）都会重新调用
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(JsonGenerator generator) throws IOException;
+    }
+    
+    private final Writer writer;
+    private final boolean sized;
+    private ByteString content;
+    
+    public JsonRequestBody(Writer writer) {
+        this(writer, false);
+    }
+    
+    private JsonRequestBody(Writer writer, boolean sized) {
+        this.writer = writer;
+        this.sized = sized;
+    }
+    
+    /**
+     * 需要Content-Length的请求体，第一次需要时生成一次，长度和每次发送都使用这份内容
+     */
+    public static JsonRequestBody sized(Writer writer) {
+        return new JsonRequestBody(writer, true);
+    }
+    
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+    
+    @Override
+    public long contentLength() throws IOException {
+        return sized ? content().size() : -1;
+    }
+    
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (sized) {
+            sink.write(content());
+        } else {
+            write(sink.outputStream());
+        }
+    }
+    
+    private synchronized ByteString content() throws IOException {
+        if (content == null) {
+            Buffer buffer = new Buffer();
+            write(buffer.outputStream());
+            content = buffer.readByteString();
+        }
+        return content;
+    }
+    
+    private void write(OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            writer.write(generator);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.aiquiztool.service;
+
+/**
+ * 常见模型的上下文窗口大小
+ * @author Tang En Dong
+ */
+public final class ModelLimits {
+    
+    /**
+     * 请求格式本身（角色标记、消息分隔等）预留的Token数
+     */
+    public static final int RESERVED_TOKENS = 64;
+    
+    private static final int DEFAULT_CONTEXT_WINDOW = 8192;
+    
+    private ModelLimits() {
+    }
+    
+    /**
+     * 根据模型名称推断上下文窗口大小，无法识别时按8K处理
+     */
+    public static int contextWindow(String model) {
+        if (model == null) {
+            return DEFAULT_CONTEXT_WINDOW;
+        }
+        
+        String name = model.toLowerCase();
+        if (name.startsWith("claude")) {
+            return 200_000;
+        }
+        if (name.startsWith("gpt-4.1")) {
+            return 1_047_576;
+        }
+        if (name.startsWith("gpt-4o") || name.startsWith("gpt-4-turbo") || name.startsWith("gpt-4-1106")
+                || name.startsWith("gpt-4-0125") || name.startsWith("o1") || name.startsWith("o3")
+                || name.startsWith("o4")) {
+            return 128_000;
+        }
+        if (name.startsWith("gpt-4-32k")) {
+            return 32_768;
+        }
+        if (name.startsWith("gpt-4")) {
+            return 8_192;
+        }
+        if (name.startsWith("gpt-3.5-turbo-instruct")) {
+            return 4_096;
+        }
+        if (name.startsWith("gpt-3.5")) {
+            return 16_385;
+        }
+        return DEFAULT_CONTEXT_WINDOW;
+    }
+}
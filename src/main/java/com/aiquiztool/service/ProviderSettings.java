@@ -0,0 +1,116 @@
+package com.aiquiztool.service;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 某个AI服务提供商的已解析配置
+ * 发送请求需要的配置都在这里解析好，请求过程中不再读取ConfigManager
+ * @author Tang En Dong
+ */
+public class ProviderSettings {
+    
+    private final String provider;
+    private final String label;
+    private final String apiKey;
+    private final String apiUrl;
+    private final String model;
+    private final int maxTokens;
+    private final double temperature;
+    private final boolean promptCaching;
+    private final Map<Deadline.Profile, Deadline.Limits> timeouts;
+    
+    public ProviderSettings(String provider, String label, String apiKey, String apiUrl,
+                            String model, int maxTokens, double temperature) {
+        this(provider, label, apiKey, apiUrl, model, maxTokens, temperature, false, Collections.emptyMap());
+    }
+    
+    private ProviderSettings(String provider, String label, String apiKey, String apiUrl,
+                             String model, int maxTokens, double temperature,
+                             boolean promptCaching, Map<Deadline.Profile, Deadline.Limits> timeouts) {
+        this.provider = provider;
+        this.label = label;
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.model = model;
+        this.maxTokens = maxTokens;
+        this.temperature = temperature;
+        this.promptCaching = promptCaching;
+        this.timeouts = timeouts;
+    }
+    
+    /**
+     * 复制一份设置，只替换API Key和服务地址，用于同一提供商的多个Key
+     */
+    public ProviderSettings withEndpoint(String apiKey, String apiUrl) {
+        return new ProviderSettings(provider, label, apiKey, apiUrl, model, maxTokens, temperature,
+            promptCaching, timeouts);
+    }
+    
+    /**
+     * 复制一份设置，加上提示词缓存开关和各场景的超时，由ProviderRegistry在解析设置时填入
+     */
+    public ProviderSettings withOptions(boolean promptCaching, Map<Deadline.Profile, Deadline.Limits> timeouts) {
+        return new ProviderSettings(provider, label, apiKey, apiUrl, model, maxTokens, temperature,
+            promptCaching, Collections.unmodifiableMap(new EnumMap<>(timeouts)));
+    }
+    
+    public String getProvider() {
+        return provider;
+    }
+    
+    /**
+     * 用于日志和错误提示的名称
+     */
+    public String getLabel() {
+        return label;
+    }
+    
+    public String getApiKey() {
+        return apiKey;
+    }
+    
+    public String getApiUrl() {
+        return apiUrl;
+    }
+    
+    public String getModel() {
+        return model;
+    }
+    
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+    
+    public double getTemperature() {
+        return temperature;
+    }
+    
+    public boolean isPromptCaching() {
+        return promptCaching;
+    }
+    
+    /**
+     * 某个场景的超时设置，未设置时不限制
+     */
+    public Deadline.Limits getTimeouts(Deadline.Profile profile) {
+        return timeouts.getOrDefault(profile, Deadline.Limits.NONE);
+    }
+    
+    /**
+     * 设置内容的指纹，所有字段都相同时相同，用于判断配置变化是否涉及该提供商
+     * 包含API Key，只能在内存中比较，不能写入日志
+     */
+    public String fingerprint() {
+        StringBuilder builder = new StringBuilder()
+            .append(provider).append('\u0000').append(label).append('\u0000')
+            .append(apiKey).append('\u0000').append(apiUrl).append('\u0000')
+            .append(model).append('\u0000').append(maxTokens).append('\u0000')
+            .append(temperature).append('\u0000').append(promptCaching);
+        for (Deadline.Profile profile : Deadline.Profile.values()) {
+            builder.append('\u0000').append(getTimeouts(profile).fingerprint());
+        }
+        return builder.toString();
+    }
+}
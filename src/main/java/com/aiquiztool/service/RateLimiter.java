@@ -0,0 +1,308 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 客户端限流器，每个提供商和API Key一个
+ * 分别用请求数和Token数两个令牌桶限制发送速度，初始容量取自配置，
+ * 之后根据服务端返回的x-ratelimit-*和anthropic-ratelimit-*响应头调整；
+ * 额度不足时请求按顺序排队等待，而不是发出后被服务端以429拒绝
+ * 服务地址、模型或配置的默认额度变化后重新创建，已在排队的请求仍由原来的限流器放行；
+ * 主题、字体等无关配置变化不影响已从响应头学到的额度
+ * @author Tang En Dong
+ */
+public class RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+    
+    private static final long WINDOW_MILLIS = 60_000;
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    
+    private static final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+    private static long quotaRevision = -1;
+    private static int[] configuredQuota;
+    
+    private final String label;
+    private final String fingerprint;
+    private final Bucket requests;
+    private final Bucket tokens;
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private boolean drainScheduled = false;
+    
+    private RateLimiter(String label, String fingerprint, int requestsPerMinute, int tokensPerMinute) {
+        this.label = label;
+        this.fingerprint = fingerprint;
+        this.requests = new Bucket(requestsPerMinute);
+        this.tokens = new Bucket(tokensPerMinute);
+    }
+    
+    /**
+     * 获取提供商和API Key对应的限流器，使用同一个Key的请求共享额度
+     */
+    public static RateLimiter forProvider(ProviderSettings settings) {
+        int[] quota = configuredQuota();
+        // 用完整的Key区分，不同的Key不会因哈希值相同而共享额度；限流器只保存在内存中，不会输出Key
+        String key = settings.getProvider() + "\u0000" + settings.getApiKey();
+        String fingerprint = settings.getApiUrl() + "\u0000" + settings.getModel() + "\u0000" + quota[0] + "/" + quota[1];
+        return limiters.compute(key, (k, existing) -> existing != null && existing.fingerprint.equals(fingerprint)
+            ? existing : new RateLimiter(settings.getLabel(), fingerprint, quota[0], quota[1]));
+    }
+    
+    /**
+     * 配置的默认额度（每分钟请求数和Token数），只在配置版本变化时重新读取
+     */
+    private static synchronized int[] configuredQuota() {
+        ConfigManager configManager = ConfigManager.getInstance();
+        long revision = configManager.getRevision();
+        if (revision != quotaRevision) {
+            configuredQuota = new int[] {
+                configManager.getRateLimitRequestsPerMinute(), configManager.getRateLimitTokensPerMinute()
+            };
+            quotaRevision = revision;
+        }
+        return configuredQuota;
+    }
+    
+    /**
+     * 申请发送一次请求的额度，tokenCost为预计消耗的Token数（问题加上max_tokens）
+     * 额度足够时返回已完成的Future，否则在额度恢复后按申请顺序完成；取消返回的Future即退出排队
+     */
+    public CompletableFuture<Void> acquire(int tokenCost) {
+        Waiter waiter = new Waiter(tokenCost);
+        synchronized (this) {
+            queue.addLast(waiter);
+        }
+        drain();
+        if (!waiter.future.isDone()) {
+            logger.debug("{}额度不足，请求排队等待，当前排队{}个", label, getQueueLength());
+        }
+        return waiter.future;
+    }
+    
+    /**
+     * 根据响应头更新额度
+     */
+    public void update(Response response) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            // OpenAI及兼容接口
+            adjust(requests, response.header("x-ratelimit-limit-requests"),
+                response.header("x-ratelimit-remaining-requests"),
+                parseDuration(response.header("x-ratelimit-reset-requests")), now);
+            adjust(tokens, response.header("x-ratelimit-limit-tokens"),
+                response.header("x-ratelimit-remaining-tokens"),
+                parseDuration(response.header("x-ratelimit-reset-tokens")), now);
+            
+            // Claude
+            adjust(requests, response.header("anthropic-ratelimit-requests-limit"),
+                response.header("anthropic-ratelimit-requests-remaining"),
+                parseInstant(response.header("anthropic-ratelimit-requests-reset"), now), now);
+            adjust(tokens, response.header("anthropic-ratelimit-tokens-limit"),
+                response.header("anthropic-ratelimit-tokens-remaining"),
+                parseInstant(response.header("anthropic-ratelimit-tokens-reset"), now), now);
+        }
+        drain();
+    }
+    
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+    
+    private void adjust(Bucket bucket, String limit, String remaining, long resetMillis, long now) {
+        Integer limitValue = parseInt(limit);
+        if (limitValue != null && limitValue > 0) {
+            bucket.resize(limitValue, now);
+        }
+        Integer remainingValue = parseInt(remaining);
+        if (remainingValue != null) {
+            bucket.sync(remainingValue, resetMillis, now);
+        }
+    }
+    
+    /**
+     * 按顺序放行额度足够的请求，队首额度不足时在额度恢复后再次检查
+     */
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        long waitMillis = 0;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            requests.refill(now);
+            tokens.refill(now);
+            while (!queue.isEmpty()) {
+                Waiter waiter = queue.peekFirst();
+                if (waiter.future.isDone()) {
+                    queue.pollFirst();
+                    continue;
+                }
+                int cost = Math.min(waiter.tokenCost, tokens.capacity);
+                long wait = Math.max(requests.millisUntil(1, now), tokens.millisUntil(cost, now));
+                if (wait > 0) {
+                    waitMillis = wait;
+                    break;
+                }
+                requests.take(1);
+                tokens.take(cost);
+                queue.pollFirst();
+                ready.add(waiter);
+            }
+            
+            if (waitMillis > 0 && !drainScheduled) {
+                drainScheduled = true;
+            } else {
+                waitMillis = 0;
+            }
+        }
+        
+        if (waitMillis > 0) {
+            CompletableFuture.delayedExecutor(waitMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                drain();
+            });
+        }
+        for (Waiter waiter : ready) {
+            waiter.future.complete(null);
+        }
+    }
+    
+    private static Integer parseInt(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 解析OpenAI的重置时间，格式如 1s、6m0s、20ms，无法解析时返回-1
+     */
+    static long parseDuration(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h":
+                    millis += amount * 3_600_000;
+                    break;
+                case "m":
+                    millis += amount * 60_000;
+                    break;
+                case "s":
+                    millis += amount * 1000;
+                    break;
+                default:
+                    millis += amount;
+                    break;
+            }
+        }
+        return matched ? (long) millis : -1;
+    }
+    
+    /**
+     * 解析Claude的重置时间（RFC 3339时间点），返回距现在的毫秒数，无法解析时返回-1
+     */
+    static long parseInstant(String value, long now) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            long reset = OffsetDateTime.parse(value.trim()).toInstant().toEpochMilli();
+            return Math.max(reset - now, 0);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * 令牌桶，容量为每分钟额度，按容量/分钟的速度匀速恢复
+     */
+    private static final class Bucket {
+        private int capacity;
+        private double available;
+        private long lastRefill;
+        private long blockedUntil = 0;
+        
+        Bucket(int capacity) {
+            this.capacity = Math.max(capacity, 1);
+            this.available = this.capacity;
+            this.lastRefill = System.currentTimeMillis();
+        }
+        
+        void refill(long now) {
+            if (now > lastRefill) {
+                available = Math.min(capacity, available + (now - lastRefill) * (double) capacity / WINDOW_MILLIS);
+                lastRefill = now;
+            }
+        }
+        
+        /**
+         * 等待多久才能取出amount个令牌
+         */
+        long millisUntil(int amount, long now) {
+            if (now < blockedUntil) {
+                return blockedUntil - now;
+            }
+            if (available >= amount) {
+                return 0;
+            }
+            return (long) Math.ceil((amount - available) * WINDOW_MILLIS / capacity);
+        }
+        
+        void take(int amount) {
+            available -= amount;
+        }
+        
+        void resize(int limit, long now) {
+            if (limit != capacity) {
+                refill(now);
+                capacity = limit;
+                available = Math.min(available, capacity);
+            }
+        }
+        
+        /**
+         * 以服务端剩余额度为准；额度用完时在重置之前不再放行
+         */
+        void sync(int remaining, long resetMillis, long now) {
+            refill(now);
+            available = Math.min(remaining, capacity);
+            if (remaining <= 0 && resetMillis > 0) {
+                blockedUntil = now + resetMillis;
+            }
+        }
+    }
+    
+    private static final class Waiter {
+        private final int tokenCost;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        
+        Waiter(int tokenCost) {
+            this.tokenCost = tokenCost;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.aiquiztool.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 相同请求合并
+ * 同一个问题在前一次请求完成前再次提交时（例如连按两次回车，或语音识别后的自动发送
+ * 与手动发送同时发生），后来的请求加入进行中的上游请求，共享同一次调用和同一个结果
+ * 每个调用方都拿到自己的句柄：取消只让该调用方退出，所有调用方都退出后才取消上游请求
+ * @author Tang En Dong
+ */
+public class RequestCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+    
+    private final ConcurrentMap<String, SharedRequest> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    
+    /**
+     * 执行请求，相同key的请求正在进行时直接加入
+     * upstreamStarter用于发起上游请求，参数为向所有调用方分发增量的监听器，
+     * 首个调用方不需要流式回复时为null
+     */
+    public AIRequestHandle execute(String key, StreamListener listener,
+                                   Function<StreamListener, AIRequestHandle> upstreamStarter) {
+        AIRequestHandle handle = new AIRequestHandle();
+        
+        while (true) {
+            SharedRequest existing = inFlight.get(key);
+            if (existing != null) {
+                if (existing.subscribe(handle, listener)) {
+                    coalesced.incrementAndGet();
+                    logger.debug("合并相同的进行中请求，当前等待者 {} 个", existing.subscriberCount());
+                    return handle;
+                }
+                // 已结束的请求尚未移除，移除后重试
+                inFlight.remove(key, existing);
+                continue;
+            }
+            
+            SharedRequest created = new SharedRequest(key, listener != null);
+            created.subscribe(handle, listener);
+            if (inFlight.putIfAbsent(key, created) == null) {
+                created.start(upstreamStarter);
+                return handle;
+            }
+        }
+    }
+    
+    /**
+     * 被合并（未发起新上游请求）的请求数
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+    
+    private static class Subscriber {
+        private final AIRequestHandle handle;
+        private final StreamListener listener;
+        
+        Subscriber(AIRequestHandle handle, StreamListener listener) {
+            this.handle = handle;
+            this.listener = listener;
+        }
+    }
+    
+    /**
+     * 一次进行中的上游请求，同时作为上游的监听器把增量分发给所有调用方
+     */
+    private class SharedRequest implements StreamListener {
+        private final String key;
+        private final boolean streaming;
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final StringBuilder received = new StringBuilder();
+        private AIRequestHandle upstream;
+        private boolean finished = false;
+        
+        SharedRequest(String key, boolean streaming) {
+            this.key = key;
+            this.streaming = streaming;
+        }
+        
+        void start(Function<StreamListener, AIRequestHandle> upstreamStarter) {
+            AIRequestHandle started = upstreamStarter.apply(streaming ? this : null);
+            synchronized (this) {
+                upstream = started;
+                if (finished) {
+                    // 所有调用方在上游请求发起前就已取消
+                    started.cancel();
+                    return;
+                }
+            }
+            started.getFuture().whenComplete((text, throwable) -> finish(text, throwable));
+        }
+        
+        /**
+         * 加入请求，已收到的文本会先作为一次增量补发给新的调用方
+         */
+        synchronized boolean subscribe(AIRequestHandle handle, StreamListener listener) {
+            if (finished) {
+                return false;
+            }
+            
+            Subscriber subscriber = new Subscriber(handle, listener != null ? handle.guard(listener) : null);
+            if (subscriber.listener != null && received.length() > 0) {
+                deliver(subscriber, received.toString());
+            }
+            subscribers.add(subscriber);
+            handle.onCancel(() -> unsubscribe(subscriber));
+            return true;
+        }
+        
+        synchronized int subscriberCount() {
+            return subscribers.size();
+        }
+        
+        private void unsubscribe(Subscriber subscriber) {
+            AIRequestHandle toCancel = null;
+            synchronized (this) {
+                if (!subscribers.remove(subscriber) || finished || !subscribers.isEmpty()) {
+                    return;
+                }
+                finished = true;
+                toCancel = upstream;
+            }
+            
+            inFlight.remove(key, this);
+            if (toCancel != null) {
+                toCancel.cancel();
+            }
+            logger.debug("所有等待者均已取消，中止上游请求");
+        }
+        
+        @Override
+        public synchronized void onDelta(String delta) {
+            received.append(delta);
+            for (Subscriber subscriber : subscribers) {
+                deliver(subscriber, delta);
+            }
+        }
+        
+        @Override
+        public synchronized void onUsage(TokenUsage usage) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.listener != null) {
+                    subscriber.listener.onUsage(usage);
+                }
+            }
+        }
+        
+        @Override
+        public synchronized void onComplete(String fullText) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.listener != null) {
+                    subscriber.listener.onComplete(fullText);
+                }
+            }
+        }
+        
+        private void deliver(Subscriber subscriber, String delta) {
+            if (subscriber.listener == null) {
+                return;
+            }
+            try {
+                subscriber.listener.onDelta(delta);
+            } catch (RuntimeException e) {
+                logger.warn("分发回复增量时发生错误", e);
+            }
+        }
+        
+        private void finish(String text, Throwable throwable) {
+            List<Subscriber> targets;
+            synchronized (this) {
+                finished = true;
+                targets = new ArrayList<>(subscribers);
+                subscribers.clear();
+            }
+            inFlight.remove(key, this);
+            
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            for (Subscriber subscriber : targets) {
+                if (cause == null) {
+                    // 上游不是流式请求时，流式调用方在结束时一次性收到完整回复
+                    if (!streaming && subscriber.listener != null) {
+                        deliver(subscriber, text);
+                        subscriber.listener.onComplete(text);
+                    }
+                    subscriber.handle.complete(text);
+                } else if (cause instanceof CancellationException) {
+                    subscriber.handle.cancel();
+                } else {
+                    subscriber.handle.completeExceptionally(cause);
+                }
+            }
+        }
+    }
+}
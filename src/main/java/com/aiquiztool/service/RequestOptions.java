@@ -0,0 +1,48 @@
+package com.aiquiztool.service;
+
+/**
+ * 单次AI请求的选项
+ * @author Tang En Dong
+ */
+public class RequestOptions {
+    
+    private boolean bypassCache = false;
+    private ConversationContext conversation;
+    private Deadline.Profile timeoutProfile = Deadline.Profile.INTERACTIVE;
+    
+    /**
+     * 是否跳过回答缓存，强制向服务端重新请求
+     */
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+    
+    public RequestOptions setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+        return this;
+    }
+    
+    /**
+     * 多轮对话上下文，为空时只发送当前问题；请求成功后问答会追加到上下文中
+     */
+    public ConversationContext getConversation() {
+        return conversation;
+    }
+    
+    public RequestOptions setConversation(ConversationContext conversation) {
+        this.conversation = conversation;
+        return this;
+    }
+    
+    /**
+     * 使用哪个场景的超时配置，默认为界面对话
+     */
+    public Deadline.Profile getTimeoutProfile() {
+        return timeoutProfile;
+    }
+    
+    public RequestOptions setTimeoutProfile(Deadline.Profile timeoutProfile) {
+        this.timeoutProfile = timeoutProfile;
+        return this;
+    }
+}
@@ -0,0 +1,382 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 回答缓存
+ * 以规范化后的问题、提供商、模型、温度和max_tokens为键，
+ * 内存中保留有限数量的最近使用条目，同时持久化到~/.aiquiztool/cache，
+ * 重启后相同的问题仍可直接命中
+ * 启动时在后台清理磁盘缓存、建立磁盘条目的索引并把最近的条目载入内存；查询时只有索引中存在的条目才读取磁盘，
+ * 未命中不产生磁盘访问；写入后磁盘条目超出上限时立即删除最旧的条目
+ * @author Tang En Dong
+ */
+public class ResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private static final String CACHE_DIR = System.getProperty("user.home") + File.separator + ".aiquiztool"
+        + File.separator + "cache";
+    
+    private static ResponseCache instance;
+    
+    private final ConfigManager configManager;
+    private final ObjectMapper objectMapper;
+    private final File cacheDir;
+    private final int maxEntries;
+    private final int diskLimit;
+    private final Map<String, CachedAnswer> memory;
+    // 磁盘上的条目及写入时间，按写入先后排列；由自身加锁保护，建立完成前不读取磁盘
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>();
+    private volatile boolean diskIndexReady = false;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    private ResponseCache() {
+        this.configManager = ConfigManager.getInstance();
+        this.objectMapper = new ObjectMapper();
+        this.cacheDir = new File(CACHE_DIR);
+        this.maxEntries = Math.max(1, configManager.getCacheMaxEntries());
+        this.diskLimit = Math.max(1, configManager.getCacheDiskMaxEntries());
+        
+        this.memory = new LinkedHashMap<String, CachedAnswer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAnswer> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        
+        if (configManager.isCacheEnabled()) {
+            Thread loader = new Thread(this::loadDisk, "response-cache-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+    
+    public static synchronized ResponseCache getInstance() {
+        if (instance == null) {
+            instance = new ResponseCache();
+        }
+        return instance;
+    }
+    
+    public boolean isEnabled() {
+        return configManager.isCacheEnabled();
+    }
+    
+    /**
+     * 计算缓存键，问题文本经过Unicode规范化并合并空白
+     */
+    public static String key(String userMessage, String systemPrompt, ProviderSettings settings) {
+        return key(userMessage, systemPrompt, Collections.emptyList(), settings);
+    }
+    
+    /**
+     * 计算带对话历史的缓存键，历史不同的相同问题不会互相命中
+     */
+    public static String key(String userMessage, String systemPrompt, List<ChatMessage> history,
+                             ProviderSettings settings) {
+        StringBuilder material = new StringBuilder();
+        material.append(settings.getProvider()).append('\u0000')
+            .append(settings.getModel()).append('\u0000')
+            .append(settings.getTemperature()).append('\u0000')
+            .append(settings.getMaxTokens()).append('\u0000')
+            .append(systemPrompt).append('\u0000');
+        for (ChatMessage message : history) {
+            material.append(message.getRole()).append('\u0001')
+                .append(message.getContent()).append('\u0000');
+        }
+        material.append(normalize(userMessage));
+        
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(material.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+    
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).trim().replaceAll("\\s+", " ");
+    }
+    
+    /**
+     * 查询缓存，先查内存再查磁盘，未命中或已过期时返回null
+     * 只有磁盘索引中存在的条目才读取文件，后台索引建立完成之前只查内存
+     */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        
+        CachedAnswer entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && isExpired(entry, now)) {
+                memory.remove(key);
+                entry = null;
+            }
+        }
+        
+        if (entry == null && isOnDisk(key)) {
+            entry = readFromDisk(key, now);
+            if (entry != null) {
+                synchronized (memory) {
+                    memory.put(key, entry);
+                }
+            }
+        }
+        
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        
+        hits.incrementAndGet();
+        return entry.answer;
+    }
+    
+    /**
+     * 写入缓存，同时保存到磁盘
+     */
+    public void put(String key, String answer) {
+        if (answer == null || answer.trim().isEmpty()) {
+            return;
+        }
+        
+        CachedAnswer entry = new CachedAnswer(answer, System.currentTimeMillis());
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeToDisk(key, entry);
+    }
+    
+    /**
+     * 清空内存和磁盘中的缓存
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        synchronized (diskIndex) {
+            diskIndex.clear();
+        }
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logger.info("回答缓存已清空");
+    }
+    
+    public long getHitCount() {
+        return hits.get();
+    }
+    
+    public long getMissCount() {
+        return misses.get();
+    }
+    
+    public String getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        long total = h + m;
+        int size;
+        synchronized (memory) {
+            size = memory.size();
+        }
+        return String.format("缓存命中 %d 次，未命中 %d 次，命中率 %.1f%%，内存条目 %d",
+            h, m, total == 0 ? 0.0 : h * 100.0 / total, size);
+    }
+    
+    private boolean isExpired(CachedAnswer entry, long now) {
+        long ttlMillis = TimeUnit.HOURS.toMillis(configManager.getCacheTtlHours());
+        return ttlMillis > 0 && now - entry.createdAt > ttlMillis;
+    }
+    
+    private CachedAnswer readFromDisk(String key, long now) {
+        File file = new File(cacheDir, key + ".json");
+        if (!file.isFile()) {
+            return null;
+        }
+        
+        try {
+            JsonNode node = objectMapper.readTree(file);
+            CachedAnswer entry = new CachedAnswer(node.path("answer").asText(), node.path("createdAt").asLong());
+            if (isExpired(entry, now) || entry.answer.isEmpty()) {
+                deleteFromDisk(key);
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            logger.warn("读取缓存文件失败: {}", file.getName(), e);
+            deleteFromDisk(key);
+            return null;
+        }
+    }
+    
+    private boolean isOnDisk(String key) {
+        if (!diskIndexReady) {
+            return false;
+        }
+        synchronized (diskIndex) {
+            return diskIndex.containsKey(key);
+        }
+    }
+    
+    private void deleteFromDisk(String key) {
+        synchronized (diskIndex) {
+            diskIndex.remove(key);
+        }
+        new File(cacheDir, key + ".json").delete();
+    }
+    
+    private void writeToDisk(String key, CachedAnswer entry) {
+        try {
+            if (!cacheDir.exists()) {
+                cacheDir.mkdirs();
+            }
+            
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("createdAt", entry.createdAt);
+            node.put("answer", entry.answer);
+            
+            // 先写临时文件再替换，避免读到写了一半的文件
+            Path target = new File(cacheDir, key + ".json").toPath();
+            Path temp = Files.createTempFile(cacheDir.toPath(), key, ".tmp");
+            objectMapper.writeValue(temp.toFile(), node);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("写入缓存文件失败", e);
+            return;
+        }
+        
+        // 超出磁盘上限时删除最早写入的条目
+        List<String> evicted = new ArrayList<>();
+        synchronized (diskIndex) {
+            diskIndex.remove(key);
+            diskIndex.put(key, entry.createdAt);
+            Iterator<String> oldest = diskIndex.keySet().iterator();
+            while (diskIndex.size() > diskLimit && oldest.hasNext()) {
+                evicted.add(oldest.next());
+                oldest.remove();
+            }
+        }
+        for (String old : evicted) {
+            new File(cacheDir, old + ".json").delete();
+        }
+    }
+    
+    /**
+     * 后台清理磁盘缓存并建立索引，最近写入的条目直接载入内存
+     */
+    private void loadDisk() {
+        List<File> kept = pruneDisk();
+        
+        // 索引按写入先后排列，加载期间新写入的条目排在最后
+        LinkedHashMap<String, Long> loaded = new LinkedHashMap<>();
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            File file = kept.get(i);
+            loaded.put(keyOf(file), file.lastModified());
+        }
+        synchronized (diskIndex) {
+            loaded.keySet().removeAll(diskIndex.keySet());
+            loaded.putAll(diskIndex);
+            diskIndex.clear();
+            diskIndex.putAll(loaded);
+        }
+        diskIndexReady = true;
+        
+        long now = System.currentTimeMillis();
+        int preload = 0;
+        for (int i = Math.min(kept.size(), maxEntries) - 1; i >= 0; i--) {
+            String key = keyOf(kept.get(i));
+            CachedAnswer entry = readFromDisk(key, now);
+            if (entry != null) {
+                synchronized (memory) {
+                    memory.putIfAbsent(key, entry);
+                }
+                preload++;
+            }
+        }
+        logger.debug("回答缓存已载入 {} 条，磁盘共 {} 条", preload, kept.size());
+    }
+    
+    private static String keyOf(File file) {
+        String name = file.getName();
+        return name.substring(0, name.length() - ".json".length());
+    }
+    
+    /**
+     * 删除过期条目和临时文件，并按修改时间删除超出磁盘上限的最旧条目，返回保留的文件（从新到旧）
+     */
+    private List<File> pruneDisk() {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".json") || name.endsWith(".tmp"));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        
+        long now = System.currentTimeMillis();
+        long ttlMillis = TimeUnit.HOURS.toMillis(configManager.getCacheTtlHours());
+        int removed = 0;
+        
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        List<File> kept = new ArrayList<>();
+        for (File file : files) {
+            boolean expired = ttlMillis > 0 && now - file.lastModified() > ttlMillis;
+            if (file.getName().endsWith(".tmp") || expired || kept.size() >= diskLimit) {
+                if (file.delete()) {
+                    removed++;
+                }
+            } else {
+                kept.add(file);
+            }
+        }
+        
+        if (removed > 0) {
+            logger.info("清理过期缓存 {} 条，保留 {} 条", removed, kept.size());
+        }
+        return kept;
+    }
+    
+    private static class CachedAnswer {
+        private final String answer;
+        private final long createdAt;
+        
+        CachedAnswer(String answer, long createdAt) {
+            this.answer = answer;
+            this.createdAt = createdAt;
+        }
+    }
+}
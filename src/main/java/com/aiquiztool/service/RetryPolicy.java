@@ -0,0 +1,82 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.config.ConfigManager;
+import okhttp3.Response;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试退避策略
+ * 等待时间按指数增长并加入随机抖动，避免多个客户端同时重试；服务端给出Retry-After时以其为准
+ * @author Tang En Dong
+ */
+class RetryPolicy {
+
+    /**
+     * 服务端要求等待超过该时间时不再重试，直接把错误交给调用方
+     */
+    private static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+    
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    
+    RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = Math.max(baseDelayMillis, 1);
+        this.maxDelayMillis = Math.max(maxDelayMillis, this.baseDelayMillis);
+    }
+    
+    static RetryPolicy fromConfig(ConfigManager configManager) {
+        return new RetryPolicy(configManager.getMaxRetries(), configManager.getRetryBaseDelayMs(),
+            configManager.getRetryMaxDelayMs());
+    }
+    
+    /**
+     * 第retries次重试前需要等待的时间，返回-1表示不再重试
+     */
+    long delayMillis(int retries, long retryAfterMillis) {
+        if (retries >= maxRetries) {
+            return -1;
+        }
+        if (retryAfterMillis >= 0) {
+            return retryAfterMillis <= MAX_RETRY_AFTER_MILLIS ? retryAfterMillis : -1;
+        }
+        
+        // 上限为base*2^retries，实际在上限的一半到上限之间随机取值
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retries, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+    
+    /**
+     * 读取retry-after-ms或Retry-After（秒数或HTTP日期），没有时返回-1
+     */
+    static long retryAfterMillis(Response response) {
+        String millis = response.header("retry-after-ms");
+        if (millis != null) {
+            try {
+                return (long) Double.parseDouble(millis.trim());
+            } catch (NumberFormatException e) {
+                // 继续尝试Retry-After
+            }
+        }
+        
+        String value = response.header("Retry-After");
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            return (long) (Double.parseDouble(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(Duration.between(ZonedDateTime.now(), date).toMillis(), 0);
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+}
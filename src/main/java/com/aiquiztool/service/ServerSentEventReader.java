@@ -0,0 +1,88 @@
+package com.aiquiztool.service;
+
+import okio.BufferedSource;
+
+import java.io.IOException;
+
+/**
+ * SSE（text/event-stream）事件读取器
+ * 按行读取响应流，遇到空行时派发一个事件
+ * @author Tang En Dong
+ */
+public class ServerSentEventReader {
+    
+    private final BufferedSource source;
+    
+    public ServerSentEventReader(BufferedSource source) {
+        this.source = source;
+    }
+    
+    /**
+     * 读取下一个事件，流结束时返回null
+     */
+    public Event next() throws IOException {
+        String eventName = null;
+        StringBuilder data = null;
+        
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                if (data != null) {
+                    return new Event(eventName, data.toString());
+                }
+                eventName = null;
+                continue;
+            }
+            
+            // 注释行
+            if (line.charAt(0) == ':') {
+                continue;
+            }
+            
+            int colon = line.indexOf(':');
+            String field = colon >= 0 ? line.substring(0, colon) : line;
+            String value = "";
+            if (colon >= 0) {
+                int start = colon + 1;
+                if (start < line.length() && line.charAt(start) == ' ') {
+                    start++;
+                }
+                value = line.substring(start);
+            }
+            
+            if ("data".equals(field)) {
+                if (data == null) {
+                    data = new StringBuilder(value);
+                } else {
+                    data.append('\n').append(value);
+                }
+            } else if ("event".equals(field)) {
+                eventName = value;
+            }
+        }
+        
+        // 流结束时派发未以空行结尾的最后一个事件
+        return data != null ? new Event(eventName, data.toString()) : null;
+    }
+    
+    /**
+     * SSE事件
+     */
+    public static class Event {
+        private final String name;
+        private final String data;
+        
+        public Event(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getData() {
+            return data;
+        }
+    }
+}
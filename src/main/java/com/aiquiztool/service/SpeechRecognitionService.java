@@ -1,6 +1,10 @@
 package com.aiquiztool.service;
 
 import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.audio.AudioRingBuffer;
+import com.aiquiztool.service.audio.FlacEncoder;
+import com.aiquiztool.service.audio.VoiceActivityDetector;
+import com.aiquiztool.service.audio.WavHeader;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
@@ -8,10 +12,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sound.sampled.*;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.Base64;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -22,18 +25,30 @@ import java.util.concurrent.TimeUnit;
 public class SpeechRecognitionService {
     private static final Logger logger = LoggerFactory.getLogger(SpeechRecognitionService.class);
     
+    /**
+     * 采集的帧长和环形缓冲区的帧数，可以缓冲约2.5秒的录音
+     */
+    private static final int FRAME_MILLIS = 20;
+    private static final int RING_SLOTS = 128;
+    
     private final ConfigManager configManager;
     private final OkHttpClient httpClient;
     private final ObjectMapper objectMapper;
     
     private AudioFormat audioFormat;
     private TargetDataLine targetDataLine;
-    private boolean isRecording = false;
-    private ByteArrayOutputStream audioBuffer;
+    private volatile boolean isRecording = false;
+    private RecordingBuffer audioBuffer;
+    // 处理线程在采集结束后交出的录音
+    private CompletableFuture<byte[]> recording;
+    private volatile Runnable endOfSpeechListener;
+    // 流式上传时录音开始即发出的请求，不支持流式上传时为null
+    private StreamingAudioBody streamingBody;
+    private CompletableFuture<String> streamingResult;
     
     public SpeechRecognitionService() {
         this.configManager = ConfigManager.getInstance();
-        this.httpClient = new OkHttpClient.Builder()
+        this.httpClient = HttpClientManager.getInstance().newBuilder()
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(60, TimeUnit.SECONDS)
             .writeTimeout(60, TimeUnit.SECONDS)
@@ -57,6 +72,11 @@ public class SpeechRecognitionService {
         if (isRecording) {
             throw new IllegalStateException("录音已在进行中");
         }
+        // 上一次录音的处理线程可能还在取最后几帧，等它交出录音后再重复使用录音存储
+        CompletableFuture<byte[]> previous = recording;
+        if (previous != null) {
+            previous.exceptionally(e -> null).join();
+        }
         
         try {
             DataLine.Info info = new DataLine.Info(TargetDataLine.class, audioFormat);
@@ -69,10 +89,24 @@ public class SpeechRecognitionService {
             targetDataLine.open(audioFormat);
             targetDataLine.start();
             
-            audioBuffer = new ByteArrayOutputStream();
+            int bytesPerSecond = Math.round(audioFormat.getSampleRate()) * audioFormat.getFrameSize();
+            int capacity = configManager.getSpeechMaxRecordingSeconds() * bytesPerSecond;
+            if (audioBuffer == null || audioBuffer.capacity() != capacity) {
+                audioBuffer = new RecordingBuffer(capacity);
+            }
+            audioBuffer.clear();
+            AudioRingBuffer ring = new AudioRingBuffer(RING_SLOTS, bytesPerSecond * FRAME_MILLIS / 1000);
+            VoiceActivityDetector detector = configManager.isSpeechVadEnabled()
+                ? new VoiceActivityDetector(configManager.getSpeechSampleRate()) : null;
+            CompletableFuture<byte[]> result = new CompletableFuture<>();
+            recording = result;
             isRecording = true;
             
-            CompletableFuture.runAsync(this::recordAudio);
+            startStreamingUpload();
+            StreamingAudioBody body = streamingBody;
+            TargetDataLine line = targetDataLine;
+            startThread("audio-capture", Thread.MAX_PRIORITY, () -> captureAudio(ring, line));
+            startThread("audio-processing", Thread.NORM_PRIORITY, () -> processAudio(ring, detector, body, result));
             
             logger.info("开始录音");
             
@@ -94,20 +128,256 @@ public class SpeechRecognitionService {
             targetDataLine.close();
         }
         
-        logger.info("停止录音，音频长度: {} 字节", audioBuffer.size());
+        // 处理线程取完剩余的帧后交出裁掉首尾静音的录音
+        CompletableFuture<byte[]> recorded = recording;
+        CompletableFuture<String> streamed = streamingResult;
+        if (streamed == null) {
+            return recorded.thenCompose(this::recognizeAudio);
+        }
         
-        return recognizeAudio(audioBuffer.toByteArray());
+        // 处理线程结束时发出最后一块，此后只需等待服务端处理；流式上传失败时改为上传完整录音
+        return streamed.handle((text, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(text);
+            }
+            logger.warn("流式上传录音失败，改为上传完整录音: {}", e.getMessage());
+            return recorded.thenCompose(this::recognizeAudio);
+        }).thenCompose(result -> result);
+    }
+    
+    /**
+     * 设置自动停止录音（说完话或达到最长录音时间）时的回调，在处理线程上调用；收到回调后应调用stopRecording获取识别结果
+     */
+    public void setEndOfSpeechListener(Runnable listener) {
+        this.endOfSpeechListener = listener;
+    }
+    
+    private static void startThread(String name, int priority, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.setPriority(priority);
+        thread.start();
+    }
+    
+    /**
+     * 采集线程：把声卡数据直接读入环形缓冲区的空闲帧，不做其他处理，尽量避免声卡缓冲区溢出
+     */
+    private void captureAudio(AudioRingBuffer ring, TargetDataLine line) {
+        byte[] discard = null;
+        long deviceOverruns = 0;
+        try {
+            while (isRecording) {
+                // 读取前声卡缓冲区已满，说明读取不及时，可能已经丢失了数据
+                if (line.available() >= line.getBufferSize()) {
+                    deviceOverruns++;
+                }
+                byte[] frame = ring.claim();
+                if (frame == null) {
+                    // 处理线程跟不上，丢弃这一帧，但仍要从声卡读出
+                    ring.recordOverrun();
+                    if (discard == null) {
+                        discard = new byte[ring.getFrameBytes()];
+                    }
+                    line.read(discard, 0, discard.length);
+                    continue;
+                }
+                int bytesRead = line.read(frame, 0, frame.length);
+                if (bytesRead > 0) {
+                    ring.publish(bytesRead);
+                }
+            }
+        } finally {
+            ring.close();
+            if (deviceOverruns > 0 || ring.getOverruns() > 0) {
+                logger.warn("录音数据有丢失: 声卡缓冲区溢出 {} 次，处理不及时丢弃 {} 帧", deviceOverruns, ring.getOverruns());
+            }
+        }
     }
     
-    private void recordAudio() {
-        byte[] buffer = new byte[4096];
+    /**
+     * 处理线程：依次把每帧交给录音存储、语音活动检测和流式上传，采集结束后交出裁剪好的录音
+     */
+    private void processAudio(AudioRingBuffer ring, VoiceActivityDetector detector, StreamingAudioBody body,
+                              CompletableFuture<byte[]> result) {
+        int autoStopMillis = configManager.getSpeechAutoStopSilenceMillis();
+        boolean autoStopped = false;
+        long uploaded = 0;
         
-        while (isRecording && targetDataLine != null) {
-            int bytesRead = targetDataLine.read(buffer, 0, buffer.length);
-            if (bytesRead > 0) {
-                audioBuffer.write(buffer, 0, bytesRead);
+        try {
+            byte[] frame;
+            while ((frame = ring.take()) != null) {
+                int stored = audioBuffer.write(frame, 0, ring.length());
+                if (detector != null) {
+                    detector.process(frame, 0, stored);
+                }
+                ring.release();
+                
+                if (body != null) {
+                    // 只上传检测到的语音，开头的静音不上传，最后一段语音之后的静音等到再次说话时才上传
+                    long end = detector == null ? audioBuffer.size() : detector.hasSpeech() ? detector.getSpeechEnd() : 0;
+                    uploaded = Math.max(uploaded, uploadStart(detector));
+                    if (end > uploaded) {
+                        body.write(audioBuffer.array(), (int) uploaded, (int) (end - uploaded));
+                        uploaded = end;
+                    }
+                }
+                
+                if (autoStopped) {
+                    continue;
+                }
+                if (audioBuffer.isFull()) {
+                    autoStopped = true;
+                    logger.info("达到最长录音时间，自动停止录音");
+                } else if (detector != null && autoStopMillis > 0 && detector.hasSpeech() && !detector.isInSpeech()
+                        && detector.getTrailingSilenceMillis() >= autoStopMillis) {
+                    autoStopped = true;
+                    logger.info("检测到说话结束，自动停止录音");
+                }
+                Runnable listener = endOfSpeechListener;
+                if (autoStopped && listener != null) {
+                    listener.run();
+                }
             }
+            
+            if (body != null) {
+                // 发出尚未上传的部分：录音停止时仍在说话，或者始终没有检测到语音时为剩余的全部录音
+                long start = Math.max(uploaded, uploadStart(detector));
+                long end = uploadEnd(detector);
+                if (end > start) {
+                    body.write(audioBuffer.array(), (int) start, (int) (end - start));
+                }
+            }
+            logger.info("停止录音，音频长度: {} 字节", audioBuffer.size());
+            result.complete(trimmedAudio(detector));
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            logger.error("处理录音数据失败", e);
+            result.completeExceptionally(e);
+        } finally {
+            if (body != null) {
+                body.finish();
+            }
+        }
+    }
+    
+    /**
+     * 上传范围的起点；未启用语音活动检测或没有检测到语音时不裁剪
+     */
+    private static long uploadStart(VoiceActivityDetector detector) {
+        return detector != null && detector.hasSpeech() ? detector.getSpeechStart() : 0;
+    }
+    
+    /**
+     * 上传范围的终点；录音停止时仍在说话则保留到最后
+     */
+    private long uploadEnd(VoiceActivityDetector detector) {
+        return detector != null && detector.hasSpeech() && !detector.isInSpeech()
+            ? detector.getSpeechEnd() : audioBuffer.size();
+    }
+    
+    /**
+     * 裁掉首尾静音后的录音，复制一份，录音存储留给下一次录音使用
+     */
+    private byte[] trimmedAudio(VoiceActivityDetector detector) {
+        int start = (int) uploadStart(detector);
+        int end = (int) uploadEnd(detector);
+        if (start > 0 || end < audioBuffer.size()) {
+            logger.info("裁掉首尾静音: {} 字节 -> {} 字节", audioBuffer.size(), end - start);
+        }
+        return Arrays.copyOfRange(audioBuffer.array(), start, end);
+    }
+    
+    /**
+     * 预先分配的录音存储，容量为最长录音时间，多次录音之间重复使用，录音过程中不再扩容和复制
+     * 只由处理线程访问
+     */
+    private static class RecordingBuffer {
+        private final byte[] data;
+        private int size = 0;
+        
+        RecordingBuffer(int capacity) {
+            this.data = new byte[capacity];
+        }
+        
+        /**
+         * 追加数据，返回实际写入的字节数，写满后不再写入
+         */
+        int write(byte[] source, int offset, int length) {
+            int count = Math.min(length, data.length - size);
+            System.arraycopy(source, offset, data, size, count);
+            size += count;
+            return count;
+        }
+        
+        boolean isFull() {
+            return size == data.length;
+        }
+        
+        int capacity() {
+            return data.length;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        byte[] array() {
+            return data;
+        }
+        
+        void clear() {
+            size = 0;
+        }
+    }
+    
+    /**
+     * 支持流式上传的提供商（目前为Azure）在录音开始时就发出请求，录到的音频随录随传，
+     * 停止录音后只剩最后一块数据和服务端处理的时间；其他提供商在录音结束后上传完整录音
+     */
+    private void startStreamingUpload() {
+        streamingBody = null;
+        streamingResult = null;
+        if (!configManager.isSpeechStreamingUploadEnabled()
+                || !"azure".equalsIgnoreCase(configManager.getSpeechProvider())
+                || configManager.getAzureSubscriptionKey().isEmpty()) {
+            return;
         }
+        
+        StreamingAudioBody body = new StreamingAudioBody(MediaType.get(azureContentType()));
+        // 数据长度未知的WAV文件头，作为第一块发出
+        byte[] header = WavHeader.create(audioFormat, WavHeader.UNKNOWN_LENGTH);
+        body.write(header, 0, header.length);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Request request = azureRequest(body).newBuilder()
+            // 先确认请求被接受再开始上传，密钥错误时不会白白上传录音
+            .header("Expect", "100-continue")
+            .build();
+        
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                body.close();
+                result.completeExceptionally(e);
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    result.complete(readAzureResponse(r));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    body.close();
+                }
+            }
+        });
+        
+        streamingBody = body;
+        streamingResult = result;
+        logger.info("开始流式上传录音");
     }
     
     private CompletableFuture<String> recognizeAudio(byte[] audioData) {
@@ -132,41 +402,15 @@ public class SpeechRecognitionService {
     private CompletableFuture<String> recognizeWithAzure(byte[] audioData) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                String subscriptionKey = configManager.getAzureSubscriptionKey();
-                String region = configManager.getAzureRegion();
-                
-                if (subscriptionKey.isEmpty()) {
+                if (configManager.getAzureSubscriptionKey().isEmpty()) {
                     return "请在设置中配置Azure订阅密钥";
                 }
                 
-                String url = String.format("https://%s.stt.speech.microsoft.com/speech/recognition/conversation/cognitiveservices/v1", region);
-                
-                RequestBody body = RequestBody.create(audioData, MediaType.parse("audio/wav"));
+                RequestBody body = RequestBody.create(WavHeader.wrap(audioFormat, audioData),
+                    MediaType.parse(azureContentType()));
                 
-                Request request = new Request.Builder()
-                    .url(url + "?language=" + configManager.getSpeechLanguage())
-                    .post(body)
-                    .addHeader("Ocp-Apim-Subscription-Key", subscriptionKey)
-                    .addHeader("Content-Type", "audio/wav")
-                    .build();
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        logger.error("Azure语音识别请求失败: {}", response.code());
-                        return "语音识别失败: " + response.message();
-                    }
-                    
-                    String responseBody = response.body().string();
-                    JsonNode json = objectMapper.readTree(responseBody);
-                    
-                    if (json.has("DisplayText")) {
-                        String text = json.get("DisplayText").asText();
-                        logger.info("Azure语音识别结果: {}", text);
-                        return text;
-                    } else {
-                        logger.warn("Azure语音识别无结果: {}", responseBody);
-                        return "未识别到语音内容";
-                    }
+                try (Response response = httpClient.newCall(azureRequest(body)).execute()) {
+                    return readAzureResponse(response);
                 }
                 
             } catch (Exception e) {
@@ -176,6 +420,42 @@ public class SpeechRecognitionService {
         });
     }
     
+    private String azureContentType() {
+        return "audio/wav; codecs=audio/pcm; samplerate=" + configManager.getSpeechSampleRate();
+    }
+    
+    private Request azureRequest(RequestBody body) {
+        String url = String.format("https://%s.stt.speech.microsoft.com/speech/recognition/conversation/cognitiveservices/v1", configManager.getAzureRegion());
+        
+        return new Request.Builder()
+            .url(url + "?language=" + configManager.getSpeechLanguage())
+            .post(body)
+            .addHeader("Ocp-Apim-Subscription-Key", configManager.getAzureSubscriptionKey())
+            .build();
+    }
+    
+    /**
+     * 解析Azure的识别结果，请求失败时抛出异常，流式上传据此改为上传完整录音
+     */
+    private String readAzureResponse(Response response) throws Exception {
+        if (!response.isSuccessful()) {
+            logger.error("Azure语音识别请求失败: {}", response.code());
+            throw new Exception("Azure返回" + response.code() + " " + response.message());
+        }
+        
+        String responseBody = response.body().string();
+        JsonNode json = objectMapper.readTree(responseBody);
+        
+        if (json.has("DisplayText")) {
+            String text = json.get("DisplayText").asText();
+            logger.info("Azure语音识别结果: {}", text);
+            return text;
+        } else {
+            logger.warn("Azure语音识别无结果: {}", responseBody);
+            return "未识别到语音内容";
+        }
+    }
+    
     /**
      * 使用Google语音识别
      */
@@ -189,16 +469,27 @@ public class SpeechRecognitionService {
                     return "请在设置中配置Google API密钥";
                 }
                 
-                // 构建请求JSON
-                String audioBase64 = Base64.getEncoder().encodeToString(audioData);
-                String requestJson = String.format(
-                    "{\"config\":{\"encoding\":\"LINEAR16\",\"sampleRateHertz\":%d,\"languageCode\":\"%s\"},\"audio\":{\"content\":\"%s\"}}",
-                    configManager.getSpeechSampleRate(),
-                    configManager.getSpeechLanguage(),
-                    audioBase64
-                );
+                // FLAC无损压缩后上传，Base64后的请求体约为原来的一半
+                boolean flac = "flac".equalsIgnoreCase(configManager.getGoogleEncoding());
+                byte[] uploadData = flac ? encodeFlac(audioData) : audioData;
                 
-                RequestBody body = RequestBody.create(requestJson, MediaType.parse("application/json"));
+                // 构建请求JSON，发送时边Base64编码边写入连接，不生成完整的Base64字符串
+                String encoding = flac ? "FLAC" : "LINEAR16";
+                int sampleRate = configManager.getSpeechSampleRate();
+                String language = configManager.getSpeechLanguage();
+                RequestBody body = new JsonRequestBody(generator -> {
+                    generator.writeStartObject();
+                    generator.writeObjectFieldStart("config");
+                    generator.writeStringField("encoding", encoding);
+                    generator.writeNumberField("sampleRateHertz", sampleRate);
+                    generator.writeStringField("languageCode", language);
+                    generator.writeEndObject();
+                    generator.writeObjectFieldStart("audio");
+                    generator.writeFieldName("content");
+                    generator.writeBinary(uploadData, 0, uploadData.length);
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                });
                 
                 Request request = new Request.Builder()
                     .url(endpoint + "?key=" + apiKey)
@@ -235,6 +526,13 @@ public class SpeechRecognitionService {
         });
     }
     
+    private byte[] encodeFlac(byte[] audioData) {
+        byte[] flac = new FlacEncoder(configManager.getSpeechSampleRate(), audioFormat.getChannels())
+            .encode(audioData, 0, audioData.length);
+        logger.info("FLAC编码: {} 字节 -> {} 字节", audioData.length, flac.length);
+        return flac;
+    }
+    
     /**
      * 使用百度语音识别
      */
@@ -254,17 +552,21 @@ public class SpeechRecognitionService {
                     return "获取百度访问令牌失败";
                 }
                 
-                // 构建识别请求
-                String audioBase64 = Base64.getEncoder().encodeToString(audioData);
-                String requestJson = String.format(
-                    "{\"format\":\"wav\",\"rate\":%d,\"channel\":1,\"cuid\":\"aiquiztool\",\"token\":\"%s\",\"speech\":\"%s\",\"len\":%d}",
-                    configManager.getSpeechSampleRate(),
-                    accessToken,
-                    audioBase64,
-                    audioData.length
-                );
-                
-                RequestBody body = RequestBody.create(requestJson, MediaType.parse("application/json"));
+                // 构建识别请求，录音是不带文件头的PCM数据，由Jackson直接Base64编码写入请求体
+                // 百度不接受分块传输的请求体，内容只生成一次，请求带Content-Length发送
+                int sampleRate = configManager.getSpeechSampleRate();
+                RequestBody body = JsonRequestBody.sized(generator -> {
+                    generator.writeStartObject();
+                    generator.writeStringField("format", "pcm");
+                    generator.writeNumberField("rate", sampleRate);
+                    generator.writeNumberField("channel", 1);
+                    generator.writeStringField("cuid", "aiquiztool");
+                    generator.writeStringField("token", accessToken);
+                    generator.writeFieldName("speech");
+                    generator.writeBinary(audioData, 0, audioData.length);
+                    generator.writeNumberField("len", audioData.length);
+                    generator.writeEndObject();
+                });
                 
                 Request request = new Request.Builder()
                     .url("https://vop.baidu.com/server_api")
@@ -0,0 +1,25 @@
+package com.aiquiztool.service;
+
+/**
+ * 流式回复监听器
+ * @author Tang En Dong
+ */
+public interface StreamListener {
+    
+    /**
+     * 收到一段增量文本
+     */
+    void onDelta(String delta);
+    
+    /**
+     * 回复结束前上报本次调用的Token用量（服务端提供时）
+     */
+    default void onUsage(TokenUsage usage) {
+    }
+    
+    /**
+     * 回复结束，参数为完整文本
+     */
+    default void onComplete(String fullText) {
+    }
+}
@@ -0,0 +1,129 @@
+package com.aiquiztool.service;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 边录音边上传的请求体
+ * 长度未知，按分块传输编码发送；录音线程调用write放入音频数据，
+ * OkHttp发送请求的线程取出后立即写入连接，录音结束后调用finish发出最后一块
+ * 等待发送的数据有上限：网络跟不上录音时放弃流式上传，请求以异常结束，由调用方在录音结束后上传完整录音
+ * @author Tang En Dong
+ */
+public class StreamingAudioBody extends RequestBody {
+
+    /**
+     * 结束标记，按引用比较
+     */
+    private static final byte[] END = new byte[0];
+    /**
+     * 放弃上传的标记，按引用比较
+     */
+    private static final byte[] ABORT = new byte[0];
+    /**
+     * 等待发送的数据上限，16kHz单声道约16秒
+     */
+    private static final long MAX_PENDING_BYTES = 512 * 1024;
+    
+    private final MediaType contentType;
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile boolean closed = false;
+    
+    public StreamingAudioBody(MediaType contentType) {
+        this.contentType = contentType;
+    }
+    
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+    
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+    
+    /**
+     * 数据只能读取一次，不能用于重试
+     */
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+    
+    /**
+     * 放入一段音频数据，上传已经结束或失败时忽略
+     * 尚未发出的数据超过上限时放弃上传；没有积压时单独一段可以超过上限，例如录音结束时一次放入的剩余录音
+     */
+    public void write(byte[] data, int offset, int length) {
+        if (closed || length <= 0) {
+            return;
+        }
+        long pending = pendingBytes.get();
+        if (pending > 0 && pending + length > MAX_PENDING_BYTES) {
+            abort();
+            return;
+        }
+        pendingBytes.addAndGet(length);
+        chunks.add(Arrays.copyOfRange(data, offset, offset + length));
+    }
+    
+    /**
+     * 音频已全部放入，发送完剩余数据后结束请求体
+     */
+    public void finish() {
+        if (!closed) {
+            chunks.add(END);
+        }
+    }
+    
+    /**
+     * 请求已失败，丢弃尚未发送的数据，之后放入的数据也不再保留
+     */
+    public void close() {
+        closed = true;
+        chunks.clear();
+        pendingBytes.set(0);
+    }
+    
+    /**
+     * 放弃上传，正在发送的请求体以异常结束
+     */
+    private void abort() {
+        close();
+        chunks.add(ABORT);
+    }
+    
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        try {
+            while (true) {
+                byte[] chunk = chunks.take();
+                if (chunk == END) {
+                    return;
+                }
+                if (chunk == ABORT) {
+                    throw new IOException("上传速度跟不上录音，已放弃流式上传");
+                }
+                pendingBytes.addAndGet(-chunk.length);
+                sink.write(chunk);
+                // 每段立即发出，不等缓冲区写满
+                sink.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("音频上传被中断");
+        } finally {
+            close();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.aiquiztool.service;
+
+/**
+ * Token计数器
+ * @author Tang En Dong
+ */
+public interface TokenCounter {
+    
+    /**
+     * 计算文本占用的Token数
+     */
+    int count(CharSequence text);
+}
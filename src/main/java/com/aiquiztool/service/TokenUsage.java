@@ -0,0 +1,62 @@
+package com.aiquiztool.service;
+
+/**
+ * Token用量
+ * @author Tang En Dong
+ */
+public class TokenUsage {
+    
+    private final int inputTokens;
+    private final int outputTokens;
+    private final int cacheReadTokens;
+    private final int cacheWriteTokens;
+    
+    public TokenUsage(int inputTokens, int outputTokens) {
+        this(inputTokens, outputTokens, 0, 0);
+    }
+    
+    public TokenUsage(int inputTokens, int outputTokens, int cacheReadTokens, int cacheWriteTokens) {
+        this.inputTokens = inputTokens;
+        this.outputTokens = outputTokens;
+        this.cacheReadTokens = cacheReadTokens;
+        this.cacheWriteTokens = cacheWriteTokens;
+    }
+    
+    /**
+     * 输入Token总数，包含命中缓存和写入缓存的部分
+     */
+    public int getInputTokens() {
+        return inputTokens;
+    }
+    
+    public int getOutputTokens() {
+        return outputTokens;
+    }
+    
+    /**
+     * 输入中命中提示词缓存的Token数
+     */
+    public int getCacheReadTokens() {
+        return cacheReadTokens;
+    }
+    
+    /**
+     * 输入中写入提示词缓存的Token数（仅Claude返回）
+     */
+    public int getCacheWriteTokens() {
+        return cacheWriteTokens;
+    }
+    
+    public int getTotalTokens() {
+        return inputTokens + outputTokens;
+    }
+    
+    @Override
+    public String toString() {
+        String text = "输入 " + inputTokens + " / 输出 " + outputTokens;
+        if (cacheReadTokens > 0 || cacheWriteTokens > 0) {
+            text += "（缓存读取 " + cacheReadTokens + " / 写入 " + cacheWriteTokens + "）";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,130 @@
+package com.aiquiztool.service.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者单消费者的音频帧环形缓冲区
+ * 帧在创建时一次分配好并反复使用：采集线程用claim取得空闲帧、直接读入声卡数据后publish，
+ * 处理线程用take取得下一帧、处理完后release归还；环满时采集线程丢弃数据并记为溢出，不会阻塞声卡读取
+ * @author Tang En Dong
+ */
+public class AudioRingBuffer {
+
+    private final byte[][] frames;
+    private final int[] lengths;
+    private final int mask;
+    // 已发布的帧数，只由生产者写入
+    private final AtomicLong head = new AtomicLong();
+    // 已归还的帧数，只由消费者写入
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private volatile boolean closed = false;
+    private volatile Thread consumer;
+    
+    /**
+     * @param slots 帧数，必须是2的幂
+     * @param frameBytes 每帧的字节数
+     */
+    public AudioRingBuffer(int slots, int frameBytes) {
+        if (slots <= 0 || (slots & (slots - 1)) != 0) {
+            throw new IllegalArgumentException("环形缓冲区的帧数必须是2的幂: " + slots);
+        }
+        this.frames = new byte[slots][frameBytes];
+        this.lengths = new int[slots];
+        this.mask = slots - 1;
+    }
+    
+    public int getFrameBytes() {
+        return frames[0].length;
+    }
+    
+    /**
+     * 生产者取得下一个空闲帧，环满时返回null
+     */
+    public byte[] claim() {
+        long position = head.get();
+        if (position - tail.get() == frames.length) {
+            return null;
+        }
+        return frames[(int) position & mask];
+    }
+    
+    /**
+     * 生产者发布claim取得的帧，length为实际写入的字节数
+     */
+    public void publish(int length) {
+        long position = head.get();
+        lengths[(int) position & mask] = length;
+        head.lazySet(position + 1);
+        wakeConsumer();
+    }
+    
+    /**
+     * 环满时生产者丢弃了一帧数据
+     */
+    public void recordOverrun() {
+        overruns.incrementAndGet();
+    }
+    
+    /**
+     * 生产者不再发布新帧，消费者取完剩余的帧后结束
+     */
+    public void close() {
+        closed = true;
+        wakeConsumer();
+    }
+    
+    /**
+     * 消费者等待下一帧，返回帧数据；生产者已结束且所有帧都已取完时返回null
+     * 处理完后必须调用release，在此之前不能再调用take
+     */
+    public byte[] take() throws InterruptedException {
+        consumer = Thread.currentThread();
+        while (true) {
+            long position = tail.get();
+            if (head.get() > position) {
+                return frames[(int) position & mask];
+            }
+            if (closed) {
+                // close之前发布的帧可能刚好在两次检查之间可见
+                if (head.get() > position) {
+                    continue;
+                }
+                return null;
+            }
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+    
+    /**
+     * take返回的帧中有效数据的字节数
+     */
+    public int length() {
+        return lengths[(int) tail.get() & mask];
+    }
+    
+    /**
+     * 消费者归还take返回的帧
+     */
+    public void release() {
+        tail.lazySet(tail.get() + 1);
+    }
+    
+    /**
+     * 因处理不及时而丢弃的帧数
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+    
+    private void wakeConsumer() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
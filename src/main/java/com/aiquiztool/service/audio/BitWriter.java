@@ -0,0 +1,81 @@
+package com.aiquiztool.service.audio;
+
+import java.util.Arrays;
+
+/**
+ * 按位写入的字节缓冲区，高位在前
+ * @author Tang En Dong
+ */
+class BitWriter {
+
+    private byte[] buffer;
+    private int size = 0;
+    // 尚未凑满一个字节的位，始终少于8位
+    private long pending = 0;
+    private int pendingBits = 0;
+    
+    BitWriter(int initialCapacity) {
+        buffer = new byte[Math.max(initialCapacity, 64)];
+    }
+    
+    /**
+     * 写入value的低bits位，bits不超过32
+     */
+    void writeBits(long value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        pending = (pending << bits) | (value & ((1L << bits) - 1));
+        pendingBits += bits;
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            append((byte) (pending >>> pendingBits));
+        }
+        pending &= (1L << pendingBits) - 1;
+    }
+    
+    /**
+     * 一元编码：value个0后跟一个1
+     */
+    void writeUnary(int value) {
+        while (value >= 32) {
+            writeBits(0, 32);
+            value -= 32;
+        }
+        writeBits(1, value + 1);
+    }
+    
+    /**
+     * 补0到字节边界
+     */
+    void alignToByte() {
+        if (pendingBits > 0) {
+            writeBits(0, 8 - pendingBits);
+        }
+    }
+    
+    /**
+     * 已写满的字节数
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * 内部缓冲区，前size个字节有效，用于计算校验值
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+    
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+    
+    private void append(byte b) {
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[size++] = b;
+    }
+}
@@ -0,0 +1,321 @@
+package com.aiquiztool.service.audio;
+
+/**
+ * FLAC编码器，纯Java实现，用于压缩上传给语音识别服务的录音
+ * 只实现编码语音需要的部分：16位PCM，各声道独立编码，每块在常数、原样和0~4阶固定预测中选择最短的一种，
+ * 残差按分区Rice编码；语音录音通常能压缩到原来的一半左右
+ * 编码时重复使用内部缓冲区，同一实例不能同时在多个线程中使用
+ * @author Tang En Dong
+ */
+public class FlacEncoder {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_PARTITION_ORDER = 6;
+    /**
+     * 4位Rice参数的最大值，15用作转义
+     */
+    private static final int MAX_RICE_PARAMETER = 14;
+    
+    private static final int SUBFRAME_CONSTANT = 0;
+    private static final int SUBFRAME_VERBATIM = 1;
+    private static final int SUBFRAME_FIXED = 8;
+    
+    private final int sampleRate;
+    private final int channels;
+    private final int[] samples = new int[BLOCK_SIZE];
+    private final int[] residual = new int[BLOCK_SIZE];
+    private final long[] partitionSums = new long[1 << MAX_PARTITION_ORDER];
+    private final int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private final int[] candidateParameters = new int[1 << MAX_PARTITION_ORDER];
+    private int partitionOrder;
+    
+    public FlacEncoder(int sampleRate, int channels) {
+        if (sampleRate <= 0 || sampleRate > 655350 || channels < 1 || channels > 8) {
+            throw new IllegalArgumentException("FLAC不支持的音频格式: " + sampleRate + "Hz, " + channels + "声道");
+        }
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+    
+    /**
+     * 编码16位有符号、小端、声道交错的PCM数据，返回完整的FLAC文件
+     */
+    public byte[] encode(byte[] pcm, int offset, int length) {
+        int frameBytes = channels * BITS_PER_SAMPLE / 8;
+        long totalSamples = length / frameBytes;
+        BitWriter out = new BitWriter(length / 2 + 128);
+        
+        writeStreamInfo(out, totalSamples);
+        int frameNumber = 0;
+        for (long start = 0; start < totalSamples; start += BLOCK_SIZE) {
+            int blockSize = (int) Math.min(BLOCK_SIZE, totalSamples - start);
+            writeFrame(out, pcm, offset + (int) start * frameBytes, blockSize, frameNumber++);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * 文件标识和STREAMINFO元数据块；帧长度和MD5填0表示未知
+     */
+    private void writeStreamInfo(BitWriter out, long totalSamples) {
+        out.writeBits(0x664C6143, 32);
+        out.writeBits(1, 1);
+        out.writeBits(0, 7);
+        out.writeBits(34, 24);
+        out.writeBits(BLOCK_SIZE, 16);
+        out.writeBits(BLOCK_SIZE, 16);
+        out.writeBits(0, 24);
+        out.writeBits(0, 24);
+        out.writeBits(sampleRate, 20);
+        out.writeBits(channels - 1, 3);
+        out.writeBits(BITS_PER_SAMPLE - 1, 5);
+        out.writeBits(totalSamples >>> 32, 4);
+        out.writeBits(totalSamples, 32);
+        for (int i = 0; i < 4; i++) {
+            out.writeBits(0, 32);
+        }
+    }
+    
+    private void writeFrame(BitWriter out, byte[] pcm, int offset, int blockSize, int frameNumber) {
+        int frameStart = out.size();
+        out.writeBits(0x3FFE, 14);
+        out.writeBits(0, 1);
+        // 固定块大小，帧头中是帧序号
+        out.writeBits(0, 1);
+        // 块大小在帧头末尾用16位表示
+        out.writeBits(7, 4);
+        // 采样率取STREAMINFO中的值
+        out.writeBits(0, 4);
+        out.writeBits(channels - 1, 4);
+        // 16位采样
+        out.writeBits(4, 3);
+        out.writeBits(0, 1);
+        writeUtf8(out, frameNumber);
+        out.writeBits(blockSize - 1, 16);
+        out.writeBits(crc8(out.buffer(), frameStart, out.size()), 8);
+        
+        int frameBytes = channels * 2;
+        for (int channel = 0; channel < channels; channel++) {
+            for (int i = 0, p = offset + channel * 2; i < blockSize; i++, p += frameBytes) {
+                samples[i] = (short) ((pcm[p + 1] << 8) | (pcm[p] & 0xFF));
+            }
+            writeSubframe(out, blockSize);
+        }
+        
+        out.alignToByte();
+        out.writeBits(crc16(out.buffer(), frameStart, out.size()), 16);
+    }
+    
+    private void writeSubframe(BitWriter out, int blockSize) {
+        if (isConstant(blockSize)) {
+            writeSubframeHeader(out, SUBFRAME_CONSTANT);
+            out.writeBits(samples[0], BITS_PER_SAMPLE);
+            return;
+        }
+        
+        long bestBits = (long) blockSize * BITS_PER_SAMPLE;
+        int bestOrder = -1;
+        for (int order = 0; order <= Math.min(MAX_FIXED_ORDER, blockSize - 1); order++) {
+            computeResidual(order, blockSize);
+            long bits = (long) order * BITS_PER_SAMPLE + choosePartitions(order, blockSize);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+            }
+        }
+        
+        if (bestOrder < 0) {
+            writeSubframeHeader(out, SUBFRAME_VERBATIM);
+            for (int i = 0; i < blockSize; i++) {
+                out.writeBits(samples[i], BITS_PER_SAMPLE);
+            }
+            return;
+        }
+        
+        // 重新计算选中阶数的残差和分区参数，避免为每个阶数保存一份
+        computeResidual(bestOrder, blockSize);
+        choosePartitions(bestOrder, blockSize);
+        writeSubframeHeader(out, SUBFRAME_FIXED | bestOrder);
+        for (int i = 0; i < bestOrder; i++) {
+            out.writeBits(samples[i], BITS_PER_SAMPLE);
+        }
+        writeResidual(out, bestOrder, blockSize);
+    }
+    
+    private static void writeSubframeHeader(BitWriter out, int type) {
+        out.writeBits(0, 1);
+        out.writeBits(type, 6);
+        // 没有省略的低位
+        out.writeBits(0, 1);
+    }
+    
+    private boolean isConstant(int blockSize) {
+        for (int i = 1; i < blockSize; i++) {
+            if (samples[i] != samples[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 固定预测的残差，即order阶差分
+     */
+    private void computeResidual(int order, int blockSize) {
+        int[] x = samples;
+        switch (order) {
+            case 0:
+                System.arraycopy(x, 0, residual, 0, blockSize);
+                break;
+            case 1:
+                for (int i = 1; i < blockSize; i++) {
+                    residual[i] = x[i] - x[i - 1];
+                }
+                break;
+            case 2:
+                for (int i = 2; i < blockSize; i++) {
+                    residual[i] = x[i] - 2 * x[i - 1] + x[i - 2];
+                }
+                break;
+            case 3:
+                for (int i = 3; i < blockSize; i++) {
+                    residual[i] = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+                }
+                break;
+            default:
+                for (int i = 4; i < blockSize; i++) {
+                    residual[i] = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4];
+                }
+                break;
+        }
+    }
+    
+    /**
+     * 选择分区阶数和各分区的Rice参数，结果存入partitionOrder和riceParameters，返回估算的残差位数
+     * 先按允许的最大阶数求各分区残差之和，再两两合并得到低一阶的分区，每个残差只需要遍历一次
+     */
+    private long choosePartitions(int order, int blockSize) {
+        int maxOrder = 0;
+        while (maxOrder < MAX_PARTITION_ORDER
+                && (blockSize & ((1 << (maxOrder + 1)) - 1)) == 0
+                && (blockSize >> (maxOrder + 1)) > order) {
+            maxOrder++;
+        }
+        
+        int partitionSize = blockSize >> maxOrder;
+        for (int p = 0; p < 1 << maxOrder; p++) {
+            long sum = 0;
+            for (int i = p == 0 ? order : p * partitionSize; i < (p + 1) * partitionSize; i++) {
+                sum += zigzag(residual[i]);
+            }
+            partitionSums[p] = sum;
+        }
+        
+        long bestBits = Long.MAX_VALUE;
+        for (int level = maxOrder; level >= 0; level--) {
+            int partitions = 1 << level;
+            int size = blockSize >> level;
+            // 编码方式2位和分区阶数4位
+            long bits = 6;
+            for (int p = 0; p < partitions; p++) {
+                int count = p == 0 ? size - order : size;
+                int parameter = riceParameter(partitionSums[p], count);
+                candidateParameters[p] = parameter;
+                bits += 4 + riceBits(partitionSums[p], count, parameter);
+            }
+            if (bits < bestBits) {
+                bestBits = bits;
+                partitionOrder = level;
+                System.arraycopy(candidateParameters, 0, riceParameters, 0, partitions);
+            }
+            for (int p = 0; p < partitions / 2; p++) {
+                partitionSums[p] = partitionSums[2 * p] + partitionSums[2 * p + 1];
+            }
+        }
+        return bestBits;
+    }
+    
+    private static int riceParameter(long sum, int count) {
+        int best = 0;
+        long bestBits = Long.MAX_VALUE;
+        for (int parameter = 0; parameter <= MAX_RICE_PARAMETER; parameter++) {
+            long bits = riceBits(sum, count, parameter);
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = parameter;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 按残差之和估算Rice编码的位数
+     */
+    private static long riceBits(long sum, int count, int parameter) {
+        return (long) count * (parameter + 1) + (sum >> parameter);
+    }
+    
+    private void writeResidual(BitWriter out, int order, int blockSize) {
+        // 编码方式0：4位Rice参数
+        out.writeBits(0, 2);
+        out.writeBits(partitionOrder, 4);
+        int partitionSize = blockSize >> partitionOrder;
+        for (int p = 0; p < 1 << partitionOrder; p++) {
+            int parameter = riceParameters[p];
+            out.writeBits(parameter, 4);
+            for (int i = p == 0 ? order : p * partitionSize; i < (p + 1) * partitionSize; i++) {
+                long value = zigzag(residual[i]);
+                out.writeUnary((int) (value >>> parameter));
+                out.writeBits(value, parameter);
+            }
+        }
+    }
+    
+    /**
+     * 有符号残差映射为无符号数：0, -1, 1, -2, 2 ...对应0, 1, 2, 3, 4 ...
+     */
+    private static long zigzag(int value) {
+        return ((long) value << 1) ^ (value >> 31);
+    }
+    
+    /**
+     * 帧序号按UTF-8的方式变长编码
+     */
+    private static void writeUtf8(BitWriter out, int value) {
+        if (value < 0x80) {
+            out.writeBits(value, 8);
+            return;
+        }
+        int continuation = value < 0x800 ? 1 : value < 0x10000 ? 2 : value < 0x200000 ? 3 : value < 0x4000000 ? 4 : 5;
+        out.writeBits((0xFF << (7 - continuation)) & 0xFF | (value >>> (6 * continuation)), 8);
+        for (int i = continuation - 1; i >= 0; i--) {
+            out.writeBits(0x80 | ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+    
+    private static int crc8(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            crc &= 0xFF;
+        }
+        return crc;
+    }
+    
+    private static int crc16(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x8005 : crc << 1;
+            }
+            crc &= 0xFFFF;
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,187 @@
+package com.aiquiztool.service.audio;
+
+/**
+ * 轻量的语音活动检测
+ * 把16位单声道PCM按20ms分帧，用帧能量和过零率判断是否为语音：能量明显高于背景噪声的是浊音，
+ * 能量略高但过零率高的是清辅音；背景噪声电平在非语音帧中自适应更新
+ * 背景噪声的初值取开头几帧中能量最低的一帧，开头恰好是按键声或呼吸声时不会把噪声估计得过高
+ * 连续几帧判为语音才进入语音状态，语音之后保持一段拖尾时间再回到静音，避免把词尾和字间停顿当成静音
+ * 数据可以按任意长度分段送入，逐个采样累计帧的统计量，处理过程中不分配内存
+ * @author Tang En Dong
+ */
+public class VoiceActivityDetector {
+
+    private static final int FRAME_MILLIS = 20;
+    /**
+     * 进入语音状态需要的连续语音帧数
+     */
+    private static final int ONSET_FRAMES = 3;
+    /**
+     * 语音结束后保持语音状态的帧数，同时作为裁剪时在语音后保留的长度
+     */
+    private static final int HANGOVER_FRAMES = 15;
+    /**
+     * 裁剪时在语音前保留的帧数，保留起音部分
+     */
+    private static final int PRE_ROLL_FRAMES = 10;
+    /**
+     * 浊音的能量至少是背景噪声的倍数（约9dB）
+     */
+    private static final double VOICED_RATIO = 8.0;
+    /**
+     * 清辅音的能量至少是背景噪声的倍数（约3dB），同时过零率要高
+     */
+    private static final double UNVOICED_RATIO = 2.0;
+    private static final double UNVOICED_ZERO_CROSSING_RATE = 0.25;
+    /**
+     * 能量的绝对下限，均方根约100（-50dBFS），低于它的一律视为静音
+     */
+    private static final double MIN_ENERGY = 100.0 * 100.0;
+    /**
+     * 背景噪声的平滑系数，新帧占的权重
+     */
+    private static final double NOISE_WEIGHT = 0.05;
+    /**
+     * 用于估计背景噪声初值的帧数，这段时间内不判断语音
+     */
+    private static final int NOISE_SEED_FRAMES = 5;
+    
+    private final int frameSamples;
+    private final int bytesPerFrame;
+    
+    // 当前帧的累计值
+    private int frameSampleCount = 0;
+    private long frameEnergy = 0;
+    private int frameZeroCrossings = 0;
+    private int previousSample = 0;
+    private int pendingLowByte = -1;
+    
+    private long processedBytes = 0;
+    private double noiseEnergy = Double.MAX_VALUE;
+    private int seedFramesLeft = NOISE_SEED_FRAMES;
+    private boolean inSpeech = false;
+    private int onsetCount = 0;
+    private int hangoverLeft = 0;
+    private long speechStartBytes = -1;
+    private long lastVoicedEndBytes = -1;
+    
+    public VoiceActivityDetector(int sampleRate) {
+        this.frameSamples = Math.max(sampleRate * FRAME_MILLIS / 1000, 1);
+        this.bytesPerFrame = frameSamples * 2;
+    }
+    
+    /**
+     * 送入一段16位有符号小端PCM数据，长度可以是奇数，剩余的字节与下一段拼接
+     */
+    public void process(byte[] pcm, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        if (pendingLowByte >= 0 && i < end) {
+            addSample((short) ((pcm[i++] << 8) | pendingLowByte));
+            pendingLowByte = -1;
+        }
+        for (; i + 1 < end; i += 2) {
+            addSample((short) ((pcm[i + 1] << 8) | (pcm[i] & 0xFF)));
+        }
+        if (i < end) {
+            pendingLowByte = pcm[i] & 0xFF;
+        }
+    }
+    
+    private void addSample(int sample) {
+        frameEnergy += (long) sample * sample;
+        if ((sample ^ previousSample) < 0) {
+            frameZeroCrossings++;
+        }
+        previousSample = sample;
+        if (++frameSampleCount == frameSamples) {
+            endFrame();
+        }
+    }
+    
+    private void endFrame() {
+        double energy = (double) frameEnergy / frameSamples;
+        double zeroCrossingRate = (double) frameZeroCrossings / frameSamples;
+        long frameStart = processedBytes;
+        processedBytes += bytesPerFrame;
+        frameSampleCount = 0;
+        frameEnergy = 0;
+        frameZeroCrossings = 0;
+        
+        if (seedFramesLeft > 0) {
+            seedFramesLeft--;
+            noiseEnergy = Math.min(noiseEnergy, energy);
+            return;
+        }
+        boolean voiced = energy > Math.max(MIN_ENERGY, noiseEnergy * VOICED_RATIO);
+        boolean unvoiced = energy > Math.max(MIN_ENERGY, noiseEnergy * UNVOICED_RATIO)
+            && zeroCrossingRate > UNVOICED_ZERO_CROSSING_RATE;
+        boolean speech = voiced || unvoiced;
+        
+        if (inSpeech) {
+            if (speech) {
+                hangoverLeft = HANGOVER_FRAMES;
+                lastVoicedEndBytes = processedBytes;
+            } else if (--hangoverLeft <= 0) {
+                inSpeech = false;
+                onsetCount = 0;
+            }
+            return;
+        }
+        
+        if (speech) {
+            if (++onsetCount >= ONSET_FRAMES) {
+                inSpeech = true;
+                hangoverLeft = HANGOVER_FRAMES;
+                lastVoicedEndBytes = processedBytes;
+                if (speechStartBytes < 0) {
+                    speechStartBytes = frameStart - (long) (ONSET_FRAMES - 1) * bytesPerFrame;
+                }
+            }
+        } else {
+            onsetCount = 0;
+            // 只在静音中更新背景噪声，变安静时立即跟随，变吵时缓慢跟随
+            noiseEnergy = energy < noiseEnergy ? energy : noiseEnergy * (1 - NOISE_WEIGHT) + energy * NOISE_WEIGHT;
+        }
+    }
+    
+    /**
+     * 是否已经检测到语音
+     */
+    public boolean hasSpeech() {
+        return speechStartBytes >= 0;
+    }
+    
+    /**
+     * 当前是否处于语音状态（包括语音之后的拖尾时间）
+     */
+    public boolean isInSpeech() {
+        return inSpeech;
+    }
+    
+    /**
+     * 裁剪后语音的起始字节位置，包含语音前保留的一小段；尚未检测到语音时为-1
+     */
+    public long getSpeechStart() {
+        return hasSpeech() ? Math.max(0, speechStartBytes - (long) PRE_ROLL_FRAMES * bytesPerFrame) : -1;
+    }
+    
+    /**
+     * 裁剪后语音的结束字节位置，包含语音后保留的一小段，不超过已处理的数据；尚未检测到语音时为-1
+     */
+    public long getSpeechEnd() {
+        return hasSpeech()
+            ? Math.min(processedBytes, lastVoicedEndBytes + (long) HANGOVER_FRAMES * bytesPerFrame)
+            : -1;
+    }
+    
+    /**
+     * 最后一段语音之后的静音时长；尚未检测到语音时为0
+     */
+    public long getTrailingSilenceMillis() {
+        if (!hasSpeech()) {
+            return 0;
+        }
+        return (processedBytes - lastVoicedEndBytes) / bytesPerFrame * FRAME_MILLIS;
+    }
+}
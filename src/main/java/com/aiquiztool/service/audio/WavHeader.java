@@ -0,0 +1,62 @@
+package com.aiquiztool.service.audio;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PCM数据的WAV（RIFF）文件头
+ * 录音时边录边上传，数据长度未知，长度字段按惯例填0xFFFFFFFF，服务端读到数据结束为止
+ * @author Tang En Dong
+ */
+public final class WavHeader {
+
+    public static final int SIZE = 44;
+    
+    /**
+     * 表示数据长度未知
+     */
+    public static final long UNKNOWN_LENGTH = -1;
+    
+    private WavHeader() {
+    }
+    
+    /**
+     * 生成文件头，dataLength为PCM数据的字节数，未知时传UNKNOWN_LENGTH
+     */
+    public static byte[] create(AudioFormat format, long dataLength) {
+        int channels = format.getChannels();
+        int sampleRate = Math.round(format.getSampleRate());
+        int bitsPerSample = format.getSampleSizeInBits();
+        int blockAlign = channels * bitsPerSample / 8;
+        boolean known = dataLength >= 0 && dataLength <= 0xFFFFFFFFL - 36;
+        
+        ByteBuffer header = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(known ? (int) (36 + dataLength) : -1);
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16);
+        // 1表示未压缩的PCM
+        header.putShort((short) 1);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bitsPerSample);
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(known ? (int) dataLength : -1);
+        return header.array();
+    }
+    
+    /**
+     * 在PCM数据前加上文件头，得到完整的WAV文件
+     */
+    public static byte[] wrap(AudioFormat format, byte[] pcm) {
+        byte[] wav = new byte[SIZE + pcm.length];
+        System.arraycopy(create(format, pcm.length), 0, wav, 0, SIZE);
+        System.arraycopy(pcm, 0, wav, SIZE, pcm.length);
+        return wav;
+    }
+}
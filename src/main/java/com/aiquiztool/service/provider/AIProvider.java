@@ -0,0 +1,61 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.service.ChatMessage;
+import com.aiquiztool.service.ProviderSettings;
+import com.aiquiztool.service.StreamListener;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.List;
+
+/**
+ * AI服务提供商
+ * 实例由对应的AIProviderFactory用已解析的设置创建一次，之后的每次请求不再读取配置
+ * @author Tang En Dong
+ */
+public interface AIProvider {
+
+    ProviderSettings getSettings();
+    
+    default String getId() {
+        return getSettings().getProvider();
+    }
+    
+    /**
+     * 用于日志和错误提示的名称
+     */
+    default String getLabel() {
+        return getSettings().getLabel();
+    }
+    
+    /**
+     * 是否支持流式输出，不支持时流式请求改为普通请求，完成后一次性回调全文
+     */
+    default boolean supportsStreaming() {
+        return true;
+    }
+    
+    /**
+     * 是否支持多轮对话，不支持时只发送当前问题
+     */
+    default boolean supportsConversation() {
+        return true;
+    }
+    
+    /**
+     * 添加鉴权请求头
+     */
+    void addAuthHeaders(Request.Builder builder);
+    
+    /**
+     * 构建请求，stream为true时请求流式输出
+     */
+    Request buildRequest(String systemPrompt, List<ChatMessage> history, String userMessage, boolean stream);
+    
+    /**
+     * 读取响应并返回完整文本，stream为true时按流式响应读取并回调增量内容；
+     * 服务端返回Token用量时无论是否流式都通过listener.onUsage上报
+     * 非2xx响应抛出ApiException
+     */
+    String readResponse(Response response, boolean stream, StreamListener listener) throws Exception;
+}
@@ -0,0 +1,44 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.ProviderSettings;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 提供商工厂，通过ServiceLoader发现
+ * 自定义的提供商实现该接口，并在 META-INF/services/com.aiquiztool.service.provider.AIProviderFactory 中登记
+ * @author Tang En Dong
+ */
+public interface AIProviderFactory {
+
+    /**
+     * 提供商标识，对应配置中的ai.provider
+     */
+    String getId();
+    
+    /**
+     * 从配置读取设置，不做校验
+     */
+    ProviderSettings readSettings(ConfigManager configManager);
+    
+    /**
+     * readSettings之外的其他API Key，配置了多个Key时请求在它们之间分配
+     */
+    default List<String> readExtraApiKeys(ConfigManager configManager) {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * readSettings之外的其他服务地址
+     */
+    default List<String> readExtraApiUrls(ConfigManager configManager) {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * 用已解析的设置创建提供商，API Key或地址缺失时抛出异常
+     */
+    AIProvider create(ProviderSettings settings) throws Exception;
+}
@@ -0,0 +1,59 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.service.ApiException;
+import com.aiquiztool.service.ChatMessage;
+import com.aiquiztool.service.CompletionParser;
+import com.aiquiztool.service.ProviderSettings;
+import com.fasterxml.jackson.core.JsonGenerator;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 提供商的公共部分：设置、响应解析器、状态码检查和消息写出
+ * @author Tang En Dong
+ */
+public abstract class AbstractAIProvider implements AIProvider {
+
+    protected final ProviderSettings settings;
+    protected final CompletionParser completionParser = new CompletionParser();
+    
+    protected AbstractAIProvider(ProviderSettings settings) {
+        this.settings = settings;
+    }
+    
+    @Override
+    public ProviderSettings getSettings() {
+        return settings;
+    }
+    
+    /**
+     * 非2xx响应抛出带状态码和Retry-After的异常
+     */
+    protected void checkStatus(Response response, String prefix) throws Exception {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "未知错误";
+            throw ApiException.of(prefix + "请求失败: " + response.code() + " - " + errorBody, response);
+        }
+    }
+    
+    protected void writeHistory(JsonGenerator generator, List<ChatMessage> history) throws IOException {
+        for (ChatMessage message : history) {
+            writeMessage(generator, message.getRole(), message.getContent());
+        }
+    }
+    
+    protected void writeMessage(JsonGenerator generator, String role, String content) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("role", role);
+        generator.writeStringField("content", content);
+        generator.writeEndObject();
+    }
+    
+    protected static void requireConfigured(String value, String message) throws Exception {
+        if (value == null || value.trim().isEmpty()) {
+            throw new Exception(message);
+        }
+    }
+}
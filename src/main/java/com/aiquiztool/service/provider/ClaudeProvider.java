@@ -0,0 +1,218 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.service.ChatMessage;
+import com.aiquiztool.service.CompletionResult;
+import com.aiquiztool.service.JsonRequestBody;
+import com.aiquiztool.service.ProviderSettings;
+import com.aiquiztool.service.ServerSentEventReader;
+import com.aiquiztool.service.StreamListener;
+import com.aiquiztool.service.TokenUsage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Claude Messages API提供商
+ * @author Tang En Dong
+ */
+public class ClaudeProvider extends AbstractAIProvider {
+    private static final Logger logger = LoggerFactory.getLogger(ClaudeProvider.class);
+    
+    private static final String API_VERSION = "2023-06-01";
+    
+    private final boolean promptCaching;
+    
+    public ClaudeProvider(ProviderSettings settings, boolean promptCaching) {
+        super(settings);
+        this.promptCaching = promptCaching;
+    }
+    
+    @Override
+    public void addAuthHeaders(Request.Builder builder) {
+        builder.addHeader("x-api-key", settings.getApiKey());
+        builder.addHeader("anthropic-version", API_VERSION);
+    }
+    
+    @Override
+    public Request buildRequest(String systemPrompt, List<ChatMessage> history, String userMessage, boolean stream) {
+        // 构建Claude请求体，发送时直接写入请求流
+        RequestBody body = new JsonRequestBody(generator ->
+            writeRequestBody(generator, systemPrompt, history, userMessage, stream));
+        
+        Request.Builder builder = new Request.Builder().url(settings.getApiUrl());
+        addAuthHeaders(builder);
+        return builder
+            .addHeader("Content-Type", "application/json")
+            .addHeader("Accept", stream ? "text/event-stream" : "application/json")
+            .post(body)
+            .build();
+    }
+    
+    @Override
+    public String readResponse(Response response, boolean stream, StreamListener listener) throws Exception {
+        checkStatus(response, "Claude API");
+        
+        if (stream) {
+            return readStream(response.body(), listener);
+        }
+        
+        return parseResponse(response.body(), listener);
+    }
+    
+    /**
+     * 写出Claude请求体
+     * 启用提示词缓存时在系统提示词和最后一条历史消息上设置缓存断点：
+     * 系统提示词在所有请求间共用，历史消息在同一对话的下一轮请求中原样作为前缀，
+     * 只有新问题需要服务端重新处理；前缀不足模型的最小缓存长度时服务端会忽略断点
+     */
+    private void writeRequestBody(JsonGenerator generator, String systemPrompt, List<ChatMessage> history,
+                                  String userMessage, boolean stream) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("model", settings.getModel());
+        generator.writeNumberField("max_tokens", settings.getMaxTokens());
+        generator.writeNumberField("temperature", settings.getTemperature());
+        if (stream) {
+            generator.writeBooleanField("stream", true);
+        }
+        if (systemPrompt != null && !systemPrompt.isEmpty()) {
+            if (promptCaching) {
+                generator.writeArrayFieldStart("system");
+                writeCachedText(generator, systemPrompt);
+                generator.writeEndArray();
+            } else {
+                generator.writeStringField("system", systemPrompt);
+            }
+        }
+        generator.writeArrayFieldStart("messages");
+        if (promptCaching && !history.isEmpty()) {
+            writeHistory(generator, history.subList(0, history.size() - 1));
+            ChatMessage last = history.get(history.size() - 1);
+            generator.writeStartObject();
+            generator.writeStringField("role", last.getRole());
+            generator.writeArrayFieldStart("content");
+            writeCachedText(generator, last.getContent());
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } else {
+            writeHistory(generator, history);
+        }
+        writeMessage(generator, "user", userMessage != null ? userMessage : "");
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+    
+    /**
+     * 写出带缓存断点的文本块
+     */
+    private void writeCachedText(JsonGenerator generator, String text) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "text");
+        generator.writeStringField("text", text);
+        generator.writeObjectFieldStart("cache_control");
+        generator.writeStringField("type", "ephemeral");
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+    
+    /**
+     * 解析Claude API响应，按顺序拼接所有文本块
+     */
+    private String parseResponse(ResponseBody responseBody, StreamListener listener) throws Exception {
+        CompletionResult result;
+        try {
+            result = completionParser.parseClaude(responseBody.byteStream());
+        } catch (IOException e) {
+            logger.error("解析Claude API响应时发生错误", e);
+            throw new Exception("解析Claude API响应失败: " + e.getMessage());
+        }
+        
+        // 检查是否有错误
+        if (result.getError() != null) {
+            throw new Exception("Claude API返回错误: " + result.getError());
+        }
+        
+        if (result.getText() == null) {
+            throw new Exception("解析Claude API响应失败: 无法解析Claude API响应");
+        }
+        
+        logger.debug("Claude回复完成，Token用量: {}", result.getUsage());
+        if (result.hasUsage()) {
+            listener.onUsage(result.getUsage());
+        }
+        return result.getText();
+    }
+    
+    /**
+     * 读取Claude Messages API的事件流
+     * message_start携带输入Token数，content_block_delta携带增量文本，
+     * message_delta携带最终的输出Token数，message_stop表示结束
+     * 没有收到message_stop就断开的连接按网络错误处理，不把截断的回复当作完整回复
+     */
+    private String readStream(ResponseBody responseBody, StreamListener listener) throws Exception {
+        ServerSentEventReader reader = new ServerSentEventReader(responseBody.source());
+        StringBuilder fullText = new StringBuilder();
+        int inputTokens = 0;
+        int outputTokens = 0;
+        int cacheReadTokens = 0;
+        int cacheWriteTokens = 0;
+        boolean stopped = false;
+        
+        ServerSentEventReader.Event event;
+        while (!stopped && (event = reader.next()) != null) {
+            CompletionResult node = completionParser.parseClaudeEvent(event.getData());
+            String type = event.getName() != null ? event.getName() : node.getType();
+            
+            switch (type != null ? type : "") {
+                case "message_start":
+                case "message_delta":
+                    if (node.getInputTokens() >= 0) {
+                        inputTokens = node.getInputTokens();
+                    }
+                    if (node.getOutputTokens() >= 0) {
+                        outputTokens = node.getOutputTokens();
+                    }
+                    if (node.getCacheReadTokens() >= 0) {
+                        cacheReadTokens = node.getCacheReadTokens();
+                    }
+                    if (node.getCacheWriteTokens() >= 0) {
+                        cacheWriteTokens = node.getCacheWriteTokens();
+                    }
+                    break;
+                case "content_block_delta":
+                    if (node.hasText()) {
+                        String text = node.getText();
+                        fullText.append(text);
+                        listener.onDelta(text);
+                    }
+                    break;
+                case "message_stop":
+                    stopped = true;
+                    break;
+                case "error":
+                    throw new Exception("Claude API返回错误: " + node.getError());
+                default:
+                    // ping、content_block_start、content_block_stop等事件无需处理
+                    break;
+            }
+        }
+        
+        if (!stopped) {
+            throw new IOException("Claude流式回复在结束前中断");
+        }
+        
+        TokenUsage usage = new TokenUsage(inputTokens, outputTokens, cacheReadTokens, cacheWriteTokens);
+        logger.debug("Claude流式回复完成，Token用量: {}", usage);
+        listener.onUsage(usage);
+        
+        String result = fullText.toString();
+        listener.onComplete(result);
+        return result;
+    }
+}
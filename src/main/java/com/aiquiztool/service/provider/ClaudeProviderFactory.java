@@ -0,0 +1,38 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.ProviderSettings;
+
+import java.util.List;
+
+/**
+ * Claude提供商工厂
+ * @author Tang En Dong
+ */
+public class ClaudeProviderFactory implements AIProviderFactory {
+
+    @Override
+    public String getId() {
+        return "claude";
+    }
+    
+    @Override
+    public ProviderSettings readSettings(ConfigManager configManager) {
+        return new ProviderSettings("claude", "Claude",
+            configManager.getClaudeApiKey(), configManager.getClaudeApiUrl(),
+            configManager.getClaudeModel(), configManager.getClaudeMaxTokens(),
+            configManager.getClaudeTemperature());
+    }
+    
+    @Override
+    public List<String> readExtraApiKeys(ConfigManager configManager) {
+        return configManager.getClaudeApiKeys();
+    }
+    
+    @Override
+    public AIProvider create(ProviderSettings settings) throws Exception {
+        AbstractAIProvider.requireConfigured(settings.getApiKey(), "Claude API Key未配置，请在设置中配置");
+        AbstractAIProvider.requireConfigured(settings.getApiUrl(), "Claude API URL未配置，请在设置中配置");
+        return new ClaudeProvider(settings, settings.isPromptCaching());
+    }
+}
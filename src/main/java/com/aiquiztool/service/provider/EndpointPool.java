@@ -0,0 +1,228 @@
+package com.aiquiztool.service.provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同一提供商的多个API Key（通用API还可以有多个服务地址）组成的端点池
+ * 每次调用选择一个端点：默认选进行中请求最少的，也可以选平均延迟最低的；
+ * 返回401/403或429的端点暂停使用一段时间，期间请求分配给其他端点
+ * @author Tang En Dong
+ */
+public class EndpointPool {
+    private static final Logger logger = LoggerFactory.getLogger(EndpointPool.class);
+    
+    /**
+     * 平均延迟的平滑系数，新样本占的权重
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+    
+    public enum Selection {
+        LEAST_LOADED,
+        LEAST_LATENCY;
+        
+        /**
+         * 解析配置值，无法识别时按进行中请求数选择
+         */
+        public static Selection of(String value) {
+            return value != null && "least-latency".equalsIgnoreCase(value.trim()) ? LEAST_LATENCY : LEAST_LOADED;
+        }
+    }
+    
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final Selection selection;
+    private final long rateLimitQuarantineMillis;
+    private final long authQuarantineMillis;
+    private final AtomicInteger cursor = new AtomicInteger();
+    
+    public EndpointPool(List<AIProvider> providers, Selection selection,
+                        long rateLimitQuarantineMillis, long authQuarantineMillis) {
+        for (int i = 0; i < providers.size(); i++) {
+            AIProvider provider = providers.get(i);
+            String name = providers.size() > 1 ? provider.getLabel() + "#" + (i + 1) : provider.getLabel();
+            endpoints.add(new Endpoint(provider, name));
+        }
+        this.selection = selection;
+        this.rateLimitQuarantineMillis = rateLimitQuarantineMillis;
+        this.authQuarantineMillis = authQuarantineMillis;
+    }
+    
+    /**
+     * 第一个端点，用于读取模型等各端点相同的设置
+     */
+    public AIProvider getPrimary() {
+        return endpoints.get(0).provider;
+    }
+    
+    public int size() {
+        return endpoints.size();
+    }
+    
+    /**
+     * 池中所有端点的提供商实例
+     */
+    public List<AIProvider> getProviders() {
+        List<AIProvider> providers = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            providers.add(endpoint.provider);
+        }
+        return providers;
+    }
+    
+    /**
+     * 选择一个端点并登记为进行中，调用结束后必须调用返回的Lease的succeeded、failed或release之一
+     * 所有端点都在暂停中时选择最早恢复的一个
+     */
+    public Lease acquire() {
+        long now = System.currentTimeMillis();
+        int count = endpoints.size();
+        // 从轮转的位置开始比较，条件相同的端点轮流使用
+        int start = Math.floorMod(cursor.getAndIncrement(), count);
+        Endpoint best = null;
+        Endpoint soonest = null;
+        for (int i = 0; i < count; i++) {
+            Endpoint endpoint = endpoints.get((start + i) % count);
+            if (endpoint.isQuarantined(now)) {
+                if (soonest == null || endpoint.quarantinedUntil < soonest.quarantinedUntil) {
+                    soonest = endpoint;
+                }
+            } else if (best == null || isBetter(endpoint, best)) {
+                best = endpoint;
+            }
+        }
+        
+        Endpoint chosen = best != null ? best : soonest;
+        chosen.inFlight.incrementAndGet();
+        return new Lease(chosen);
+    }
+    
+    /**
+     * 是否还有未暂停的端点
+     */
+    public boolean hasAvailable() {
+        long now = System.currentTimeMillis();
+        return endpoints.stream().anyMatch(endpoint -> !endpoint.isQuarantined(now));
+    }
+    
+    private boolean isBetter(Endpoint candidate, Endpoint current) {
+        int load = Integer.compare(candidate.inFlight.get(), current.inFlight.get());
+        int latency = Double.compare(candidate.averageLatency, current.averageLatency);
+        if (selection == Selection.LEAST_LATENCY) {
+            return latency < 0 || (latency == 0 && load < 0);
+        }
+        return load < 0 || (load == 0 && latency < 0);
+    }
+    
+    /**
+     * 各端点的状态，用于界面显示
+     */
+    public String describe() {
+        long now = System.currentTimeMillis();
+        StringBuilder description = new StringBuilder();
+        for (Endpoint endpoint : endpoints) {
+            if (description.length() > 0) {
+                description.append("；");
+            }
+            description.append(endpoint.name).append(": 进行中 ").append(endpoint.inFlight.get())
+                .append("，平均延迟 ").append(Math.round(endpoint.averageLatency)).append("ms");
+            if (endpoint.isQuarantined(now)) {
+                long seconds = (endpoint.quarantinedUntil - now + 999) / 1000;
+                description.append("，暂停中（").append(seconds).append("秒后恢复）");
+            }
+        }
+        return description.toString();
+    }
+    
+    private static final class Endpoint {
+        private final AIProvider provider;
+        private final String name;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // 以下字段由this保护写入
+        private volatile double averageLatency = 0;
+        private volatile long quarantinedUntil = 0;
+        
+        Endpoint(AIProvider provider, String name) {
+            this.provider = provider;
+            this.name = name;
+        }
+        
+        boolean isQuarantined(long now) {
+            return now < quarantinedUntil;
+        }
+        
+        synchronized void recordLatency(long millis) {
+            averageLatency = averageLatency == 0 ? millis
+                : averageLatency * (1 - LATENCY_WEIGHT) + millis * LATENCY_WEIGHT;
+        }
+        
+        synchronized void quarantine(long until) {
+            quarantinedUntil = Math.max(quarantinedUntil, until);
+        }
+    }
+    
+    /**
+     * 一次调用占用的端点，结束方法只有第一次调用生效
+     */
+    public final class Lease {
+        private final Endpoint endpoint;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        
+        private Lease(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        public AIProvider getProvider() {
+            return endpoint.provider;
+        }
+        
+        /**
+         * 用于日志的端点名称，多个Key时带序号
+         */
+        public String getName() {
+            return endpoint.name;
+        }
+        
+        public void succeeded(long latencyMillis) {
+            if (release()) {
+                endpoint.recordLatency(latencyMillis);
+            }
+        }
+        
+        /**
+         * 调用失败；401/403和429使端点暂停使用，429优先按Retry-After暂停
+         */
+        public void failed(int statusCode, long retryAfterMillis) {
+            if (!release()) {
+                return;
+            }
+            long pause;
+            if (statusCode == 401 || statusCode == 403) {
+                pause = authQuarantineMillis;
+            } else if (statusCode == 429) {
+                pause = retryAfterMillis > 0 ? retryAfterMillis : rateLimitQuarantineMillis;
+            } else {
+                return;
+            }
+            endpoint.quarantine(System.currentTimeMillis() + pause);
+            if (endpoints.size() > 1) {
+                logger.warn("{}返回{}，暂停使用{}秒", endpoint.name, statusCode, (pause + 999) / 1000);
+            }
+        }
+        
+        /**
+         * 结束占用而不记录结果（请求被取消或未发出），返回是否为第一次结束
+         */
+        public boolean release() {
+            if (released.compareAndSet(false, true)) {
+                endpoint.inFlight.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
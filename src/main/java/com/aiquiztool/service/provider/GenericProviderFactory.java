@@ -0,0 +1,43 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.ProviderSettings;
+
+import java.util.List;
+
+/**
+ * 通用API（OpenAI兼容格式）提供商工厂
+ * @author Tang En Dong
+ */
+public class GenericProviderFactory implements AIProviderFactory {
+
+    @Override
+    public String getId() {
+        return "generic";
+    }
+    
+    @Override
+    public ProviderSettings readSettings(ConfigManager configManager) {
+        return new ProviderSettings("generic", "通用API",
+            configManager.getGenericApiKey(), configManager.getGenericApiUrl(),
+            configManager.getGenericModel(), configManager.getGenericMaxTokens(),
+            configManager.getGenericTemperature());
+    }
+    
+    @Override
+    public List<String> readExtraApiKeys(ConfigManager configManager) {
+        return configManager.getGenericApiKeys();
+    }
+    
+    @Override
+    public List<String> readExtraApiUrls(ConfigManager configManager) {
+        return configManager.getGenericApiUrls();
+    }
+    
+    @Override
+    public AIProvider create(ProviderSettings settings) throws Exception {
+        AbstractAIProvider.requireConfigured(settings.getApiKey(), "通用API Key未配置，请在设置中配置");
+        AbstractAIProvider.requireConfigured(settings.getApiUrl(), "通用API URL未配置，请在设置中配置");
+        return new OpenAICompatibleProvider(settings);
+    }
+}
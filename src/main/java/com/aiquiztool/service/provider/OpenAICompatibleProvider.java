@@ -0,0 +1,180 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.service.ChatMessage;
+import com.aiquiztool.service.CompletionResult;
+import com.aiquiztool.service.JsonRequestBody;
+import com.aiquiztool.service.ProviderSettings;
+import com.aiquiztool.service.ServerSentEventReader;
+import com.aiquiztool.service.StreamListener;
+import com.aiquiztool.service.TokenUsage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * OpenAI Chat Completions格式的提供商，OpenAI和通用API共用
+ * @author Tang En Dong
+ */
+public class OpenAICompatibleProvider extends AbstractAIProvider {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAICompatibleProvider.class);
+    
+    private final boolean promptCaching;
+    
+    public OpenAICompatibleProvider(ProviderSettings settings) {
+        this(settings, false);
+    }
+    
+    /**
+     * @param promptCaching 是否携带prompt_cache_key，只有OpenAI官方接口支持该参数
+     */
+    public OpenAICompatibleProvider(ProviderSettings settings, boolean promptCaching) {
+        super(settings);
+        this.promptCaching = promptCaching;
+    }
+    
+    @Override
+    public void addAuthHeaders(Request.Builder builder) {
+        builder.addHeader("Authorization", "Bearer " + settings.getApiKey());
+    }
+    
+    @Override
+    public Request buildRequest(String systemPrompt, List<ChatMessage> history, String userMessage, boolean stream) {
+        RequestBody body = new JsonRequestBody(generator ->
+            writeRequestBody(generator, systemPrompt, history, userMessage, stream));
+        
+        Request.Builder builder = new Request.Builder().url(settings.getApiUrl());
+        addAuthHeaders(builder);
+        return builder
+            .addHeader("Content-Type", "application/json")
+            .addHeader("Accept", stream ? "text/event-stream" : "application/json")
+            .post(body)
+            .build();
+    }
+    
+    @Override
+    public String readResponse(Response response, boolean stream, StreamListener listener) throws Exception {
+        checkStatus(response, "API");
+        
+        if (stream) {
+            return readStream(response.body(), listener);
+        }
+        
+        return parseResponse(response.body(), listener);
+    }
+    
+    /**
+     * 写出请求体
+     * 服务端按请求开头的相同内容自动缓存，因此消息始终按系统提示词、历史消息、当前问题的顺序排列，
+     * 不变的部分在前；prompt_cache_key让相同系统提示词的请求尽量路由到同一缓存
+     */
+    private void writeRequestBody(JsonGenerator generator, String systemPrompt, List<ChatMessage> history,
+                                  String userMessage, boolean stream) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("model", settings.getModel());
+        generator.writeArrayFieldStart("messages");
+        if (systemPrompt != null && !systemPrompt.isEmpty()) {
+            writeMessage(generator, "system", systemPrompt);
+        }
+        writeHistory(generator, history);
+        writeMessage(generator, "user", userMessage != null ? userMessage : "");
+        generator.writeEndArray();
+        generator.writeNumberField("max_tokens", settings.getMaxTokens());
+        generator.writeNumberField("temperature", settings.getTemperature());
+        generator.writeBooleanField("stream", stream);
+        if (promptCaching && systemPrompt != null && !systemPrompt.isEmpty()) {
+            generator.writeStringField("prompt_cache_key",
+                "aiquiztool-" + Integer.toHexString(systemPrompt.hashCode()));
+        }
+        // OpenAI的流式响应默认不带usage，需要显式请求；兼容接口不一定支持该参数
+        if (stream && "openai".equals(settings.getProvider())) {
+            generator.writeObjectFieldStart("stream_options");
+            generator.writeBooleanField("include_usage", true);
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+    
+    private String parseResponse(ResponseBody responseBody, StreamListener listener) throws Exception {
+        CompletionResult result;
+        try {
+            result = completionParser.parseOpenAI(responseBody.byteStream());
+        } catch (IOException e) {
+            logger.error("解析API响应时发生错误", e);
+            throw new Exception("解析API响应失败: " + e.getMessage());
+        }
+        
+        if (result.getError() != null) {
+            throw new Exception("API返回错误: " + result.getError());
+        }
+        
+        if (result.getText() == null) {
+            throw new Exception("解析API响应失败: 无法解析API响应");
+        }
+        
+        logger.debug("API回复完成，Token用量: {}", result.getUsage());
+        if (result.hasUsage()) {
+            listener.onUsage(result.getUsage());
+        }
+        return result.getText();
+    }
+    
+    /**
+     * 逐个读取流式响应的SSE事件，把choices[0].delta.content交给监听器
+     * 没有收到[DONE]或finish_reason就断开的连接按网络错误处理，不把截断的回复当作完整回复
+     */
+    private String readStream(ResponseBody responseBody, StreamListener listener) throws Exception {
+        ServerSentEventReader reader = new ServerSentEventReader(responseBody.source());
+        StringBuilder fullText = new StringBuilder();
+        TokenUsage usage = null;
+        boolean finished = false;
+        
+        ServerSentEventReader.Event event;
+        while ((event = reader.next()) != null) {
+            String data = event.getData();
+            if ("[DONE]".equals(data.trim())) {
+                finished = true;
+                break;
+            }
+            
+            CompletionResult chunk = completionParser.parseOpenAIChunk(data);
+            if (chunk.getError() != null) {
+                throw new Exception("API返回错误: " + chunk.getError());
+            }
+            
+            if (chunk.hasText()) {
+                String delta = chunk.getText();
+                fullText.append(delta);
+                listener.onDelta(delta);
+            }
+            
+            // 带usage的数据块在finish_reason之后，收到finish_reason后继续读取
+            if (chunk.getFinishReason() != null) {
+                finished = true;
+            }
+            
+            // 部分兼容接口在最后一个数据块中附带usage
+            if (chunk.hasUsage()) {
+                usage = chunk.getUsage();
+            }
+        }
+        
+        if (!finished) {
+            throw new IOException("流式回复在结束前中断");
+        }
+        
+        if (usage != null) {
+            listener.onUsage(usage);
+        }
+        
+        String result = fullText.toString();
+        listener.onComplete(result);
+        return result;
+    }
+}
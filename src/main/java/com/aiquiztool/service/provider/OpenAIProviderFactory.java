@@ -0,0 +1,38 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.ProviderSettings;
+
+import java.util.List;
+
+/**
+ * OpenAI提供商工厂
+ * @author Tang En Dong
+ */
+public class OpenAIProviderFactory implements AIProviderFactory {
+
+    @Override
+    public String getId() {
+        return "openai";
+    }
+    
+    @Override
+    public ProviderSettings readSettings(ConfigManager configManager) {
+        return new ProviderSettings("openai", "OpenAI",
+            configManager.getOpenaiApiKey(), configManager.getOpenaiApiUrl(),
+            configManager.getOpenaiModel(), configManager.getOpenaiMaxTokens(),
+            configManager.getOpenaiTemperature());
+    }
+    
+    @Override
+    public List<String> readExtraApiKeys(ConfigManager configManager) {
+        return configManager.getOpenaiApiKeys();
+    }
+    
+    @Override
+    public AIProvider create(ProviderSettings settings) throws Exception {
+        AbstractAIProvider.requireConfigured(settings.getApiKey(), "OpenAI API Key未配置，请在设置中配置");
+        AbstractAIProvider.requireConfigured(settings.getApiUrl(), "OpenAI API URL未配置，请在设置中配置");
+        return new OpenAICompatibleProvider(settings, settings.isPromptCaching());
+    }
+}
@@ -0,0 +1,190 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.Deadline;
+import com.aiquiztool.service.ProviderSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * 提供商注册表
+ * 启动时通过ServiceLoader发现所有AIProviderFactory；提供商实例按配置构建后缓存，
+ * 配置变化时只重新构建设置确实变化了的提供商，其余端点池的暂停状态和延迟统计保持不变
+ * @author Tang En Dong
+ */
+public class ProviderRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRegistry.class);
+    
+    private static ProviderRegistry instance;
+    
+    private final ConfigManager configManager;
+    private final Map<String, AIProviderFactory> factories = new LinkedHashMap<>();
+    private final Map<String, EndpointPool> pools = new HashMap<>();
+    // 构建端点池时各端点设置和池参数的指纹
+    private final Map<String, String> poolFingerprints = new HashMap<>();
+    private final Map<String, ProviderSettings> settings = new HashMap<>();
+    private long builtRevision = -1;
+    
+    private ProviderRegistry() {
+        this.configManager = ConfigManager.getInstance();
+        for (AIProviderFactory factory : ServiceLoader.load(AIProviderFactory.class)) {
+            factories.put(factory.getId(), factory);
+        }
+        logger.info("已加载AI服务提供商: {}", factories.keySet());
+    }
+    
+    public static synchronized ProviderRegistry getInstance() {
+        if (instance == null) {
+            instance = new ProviderRegistry();
+        }
+        return instance;
+    }
+    
+    /**
+     * 获取已构建的提供商（配置了多个Key时为第一个），设置不完整时抛出异常
+     */
+    public synchronized AIProvider get(String id) throws Exception {
+        return pool(id).getPrimary();
+    }
+    
+    /**
+     * 获取提供商的端点池，每个API Key和服务地址的组合对应一个提供商实例
+     * 该提供商的设置变化时重新构建，各端点的负载和暂停状态随之清空
+     */
+    public synchronized EndpointPool pool(String id) throws Exception {
+        invalidateIfChanged();
+        EndpointPool pool = pools.get(id);
+        if (pool == null) {
+            AIProviderFactory factory = factory(id);
+            ProviderSettings base = settings(id);
+            List<ProviderSettings> endpointSettings = endpointSettings(id);
+            List<AIProvider> endpoints = new ArrayList<>();
+            for (ProviderSettings endpoint : endpointSettings) {
+                endpoints.add(factory.create(endpoint));
+            }
+            pool = new EndpointPool(endpoints, EndpointPool.Selection.of(configManager.getKeyPoolSelection()),
+                configManager.getKeyPoolRateLimitQuarantineSeconds() * 1000L,
+                configManager.getKeyPoolAuthQuarantineSeconds() * 1000L);
+            if (endpoints.size() > 1) {
+                logger.info("{}共配置{}个端点", base.getLabel(), endpoints.size());
+            }
+            pools.put(id, pool);
+            poolFingerprints.put(id, poolFingerprint(endpointSettings));
+        }
+        return pool;
+    }
+    
+    /**
+     * 每个服务地址和API Key组合的设置
+     */
+    private List<ProviderSettings> endpointSettings(String id) throws Exception {
+        AIProviderFactory factory = factory(id);
+        ProviderSettings base = settings(id);
+        List<ProviderSettings> endpoints = new ArrayList<>();
+        for (String apiUrl : distinct(base.getApiUrl(), factory.readExtraApiUrls(configManager))) {
+            for (String apiKey : distinct(base.getApiKey(), factory.readExtraApiKeys(configManager))) {
+                endpoints.add(base.withEndpoint(apiKey, apiUrl));
+            }
+        }
+        return endpoints;
+    }
+    
+    /**
+     * 端点池的指纹：所有端点的设置加上选择方式和暂停时长
+     */
+    private String poolFingerprint(List<ProviderSettings> endpointSettings) {
+        StringBuilder builder = new StringBuilder();
+        for (ProviderSettings endpoint : endpointSettings) {
+            builder.append(endpoint.fingerprint()).append('\n');
+        }
+        return builder.append(configManager.getKeyPoolSelection()).append('\n')
+            .append(configManager.getKeyPoolRateLimitQuarantineSeconds()).append('\n')
+            .append(configManager.getKeyPoolAuthQuarantineSeconds()).toString();
+    }
+    
+    /**
+     * 读取提供商的设置，不校验API Key和地址，用于只需要模型参数的场合
+     * 提示词缓存开关和各场景的超时在这里一并解析，提供商和请求过程中不再读取配置
+     */
+    public synchronized ProviderSettings settings(String id) throws Exception {
+        invalidateIfChanged();
+        ProviderSettings resolved = settings.get(id);
+        if (resolved == null) {
+            Map<Deadline.Profile, Deadline.Limits> timeouts = new EnumMap<>(Deadline.Profile.class);
+            for (Deadline.Profile profile : Deadline.Profile.values()) {
+                timeouts.put(profile, Deadline.Limits.fromConfig(configManager, id, profile));
+            }
+            resolved = factory(id).readSettings(configManager)
+                .withOptions(configManager.isAIPromptCachingEnabled(), timeouts);
+            settings.put(id, resolved);
+        }
+        return resolved;
+    }
+    
+    public Set<String> getProviderIds() {
+        return Collections.unmodifiableSet(factories.keySet());
+    }
+    
+    /**
+     * 主值加上其他值，去掉空值和重复值；全部为空时保留主值，由工厂在创建时报告未配置
+     */
+    private static List<String> distinct(String primary, List<String> extra) {
+        LinkedHashSet<String> values = new LinkedHashSet<>();
+        if (primary != null && !primary.trim().isEmpty()) {
+            values.add(primary.trim());
+        }
+        for (String value : extra) {
+            if (value != null && !value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        if (values.isEmpty()) {
+            values.add(primary != null ? primary : "");
+        }
+        return new ArrayList<>(values);
+    }
+    
+    private AIProviderFactory factory(String id) throws Exception {
+        AIProviderFactory factory = factories.get(id);
+        if (factory == null) {
+            throw new Exception("不支持的AI服务提供商: " + id);
+        }
+        return factory;
+    }
+    
+    /**
+     * 配置版本变化时重新解析设置，只丢弃指纹变化了的端点池
+     */
+    private void invalidateIfChanged() {
+        long revision = configManager.getRevision();
+        if (revision == builtRevision) {
+            return;
+        }
+        builtRevision = revision;
+        settings.clear();
+        for (String id : new ArrayList<>(pools.keySet())) {
+            String fingerprint;
+            try {
+                fingerprint = poolFingerprint(endpointSettings(id));
+            } catch (Exception e) {
+                fingerprint = null;
+            }
+            if (fingerprint == null || !fingerprint.equals(poolFingerprints.get(id))) {
+                pools.remove(id);
+                poolFingerprints.remove(id);
+                logger.debug("{}的设置已变化，重新构建端点池", id);
+            }
+        }
+    }
+}
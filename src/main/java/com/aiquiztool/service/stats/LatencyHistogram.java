@@ -0,0 +1,91 @@
+package com.aiquiztool.service.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁延迟直方图，单位毫秒
+ * 桶按对数划分：每个2的幂区间再等分为8个子桶，相对误差不超过12.5%，
+ * 0ms到数十年只需要几百个桶；记录一次只是一次原子自增，可以在每次调用时记录
+ * @author Tang En Dong
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    
+    public void record(long millis) {
+        long value = Math.max(millis, 0);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 其他线程同时更新了最大值，重新比较
+        }
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public long getMax() {
+        return max.get();
+    }
+    
+    public double getMean() {
+        long n = count.sum();
+        return n > 0 ? (double) sum.sum() / n : 0;
+    }
+    
+    /**
+     * 第percentile百分位的近似值（取所在桶的中点），没有数据时返回0
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        
+        long rank = Math.max((long) Math.ceil(percentile / 100.0 * total), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long lower = lowerBound(i);
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(lower + (upper - lower) / 2, max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+}
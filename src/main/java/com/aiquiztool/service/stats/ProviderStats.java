@@ -0,0 +1,176 @@
+package com.aiquiztool.service.stats;
+
+import com.aiquiztool.service.TokenUsage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个提供商和模型的调用统计
+ * 累计值使用LongAdder，延迟使用无锁直方图，另有最近1分钟和最近1小时两个滑动窗口
+ * @author Tang En Dong
+ */
+public class ProviderStats {
+
+    private final String provider;
+    private final String model;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inputTokens = new LongAdder();
+    private final LongAdder outputTokens = new LongAdder();
+    private final LongAdder cacheReadTokens = new LongAdder();
+    private final LongAdder cacheWriteTokens = new LongAdder();
+    private final LongAdder generationMillis = new LongAdder();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final RollingWindow lastMinute = new RollingWindow(1000, 60);
+    private final RollingWindow lastHour = new RollingWindow(60_000, 60);
+    private final RollingWindow[] windows = {lastMinute, lastHour};
+    
+    ProviderStats(String provider, String model) {
+        this.provider = provider;
+        this.model = model;
+    }
+    
+    /**
+     * 记录一次成功的调用
+     * @param firstByteMillis 从发出请求到收到第一段内容的时间
+     * @param totalMillis 从发出请求到读完响应的时间
+     * @param usage Token用量，输入Token数包含缓存读写部分
+     * @param streamed 是否为流式响应
+     */
+    public void recordSuccess(long firstByteMillis, long totalMillis, TokenUsage usage, boolean streamed) {
+        long input = usage.getInputTokens();
+        long output = usage.getOutputTokens();
+        long now = System.currentTimeMillis();
+        // 非流式响应在全部生成后才返回，首字节之后只是传输时间，不参与输出速度计算
+        long generation = streamed ? Math.max(totalMillis - firstByteMillis, 0) : 0;
+        requests.increment();
+        inputTokens.add(input);
+        outputTokens.add(output);
+        cacheReadTokens.add(usage.getCacheReadTokens());
+        cacheWriteTokens.add(usage.getCacheWriteTokens());
+        timeToFirstByte.record(firstByteMillis);
+        totalLatency.record(totalMillis);
+        if (generation > 0) {
+            generationMillis.add(generation);
+        }
+        
+        for (RollingWindow window : windows) {
+            window.add(now, RollingWindow.REQUESTS, 1);
+            window.add(now, RollingWindow.INPUT_TOKENS, input);
+            window.add(now, RollingWindow.OUTPUT_TOKENS, output);
+            window.add(now, RollingWindow.LATENCY_MILLIS, totalMillis);
+            if (generation > 0) {
+                window.add(now, RollingWindow.GENERATION_MILLIS, generation);
+            }
+        }
+    }
+    
+    /**
+     * 记录一次失败的调用（每次重试单独计数）
+     */
+    public void recordFailure() {
+        long now = System.currentTimeMillis();
+        requests.increment();
+        errors.increment();
+        for (RollingWindow window : windows) {
+            window.add(now, RollingWindow.REQUESTS, 1);
+            window.add(now, RollingWindow.ERRORS, 1);
+        }
+    }
+    
+    public String getProvider() {
+        return provider;
+    }
+    
+    public String getModel() {
+        return model;
+    }
+    
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    public long getInputTokens() {
+        return inputTokens.sum();
+    }
+    
+    public long getOutputTokens() {
+        return outputTokens.sum();
+    }
+    
+    public long getCacheReadTokens() {
+        return cacheReadTokens.sum();
+    }
+    
+    public long getCacheWriteTokens() {
+        return cacheWriteTokens.sum();
+    }
+    
+    /**
+     * 输入Token中命中提示词缓存的比例
+     */
+    public double getCacheHitRate() {
+        long input = inputTokens.sum();
+        return input > 0 ? (double) cacheReadTokens.sum() / input : 0;
+    }
+    
+    public LatencyHistogram getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+    
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency;
+    }
+    
+    /**
+     * 累计输出速度（Token/秒）
+     */
+    public double getTokensPerSecond() {
+        long millis = generationMillis.sum();
+        return millis > 0 ? outputTokens.sum() * 1000.0 / millis : 0;
+    }
+    
+    public RollingWindow.Totals getLastMinute() {
+        return lastMinute.totals(System.currentTimeMillis());
+    }
+    
+    public RollingWindow.Totals getLastHour() {
+        return lastHour.totals(System.currentTimeMillis());
+    }
+    
+    /**
+     * 多行的统计说明
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        text.append(provider).append(" / ").append(model).append('\n');
+        text.append(String.format("  请求 %d 次，失败 %d 次，Token 输入 %d / 输出 %d%n",
+            getRequests(), getErrors(), getInputTokens(), getOutputTokens()));
+        if (getCacheReadTokens() > 0 || getCacheWriteTokens() > 0) {
+            text.append(String.format("  提示词缓存 读取 %d / 写入 %d，输入命中率 %.1f%%%n",
+                getCacheReadTokens(), getCacheWriteTokens(), getCacheHitRate() * 100));
+        }
+        text.append(String.format("  首字节延迟 P50 %dms / P95 %dms / P99 %dms%n",
+            timeToFirstByte.percentile(50), timeToFirstByte.percentile(95), timeToFirstByte.percentile(99)));
+        text.append(String.format("  总延迟 P50 %dms / P95 %dms / P99 %dms / 最大 %dms%n",
+            totalLatency.percentile(50), totalLatency.percentile(95), totalLatency.percentile(99),
+            totalLatency.getMax()));
+        text.append(String.format("  输出速度 %.1f Token/秒%n", getTokensPerSecond()));
+        appendWindow(text, "最近1分钟", getLastMinute());
+        appendWindow(text, "最近1小时", getLastHour());
+        return text.toString();
+    }
+    
+    private void appendWindow(StringBuilder text, String name, RollingWindow.Totals totals) {
+        text.append(String.format("  %s: 请求 %d 次，失败 %d 次，Token %d，平均延迟 %dms，输出速度 %.1f Token/秒%n",
+            name, totals.getRequests(), totals.getErrors(),
+            totals.getInputTokens() + totals.getOutputTokens(),
+            totals.getAverageLatencyMillis(), totals.getTokensPerSecond()));
+    }
+}
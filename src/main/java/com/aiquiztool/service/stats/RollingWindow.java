@@ -0,0 +1,133 @@
+package com.aiquiztool.service.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 滑动时间窗口计数器，窗口由固定数量的时间槽组成，旧槽位在下次写入时复用
+ * 不加锁：槽位切换的瞬间并发写入的少量计数可能丢失，对统计显示没有影响
+ * @author Tang En Dong
+ */
+public class RollingWindow {
+
+    static final int REQUESTS = 0;
+    static final int ERRORS = 1;
+    static final int INPUT_TOKENS = 2;
+    static final int OUTPUT_TOKENS = 3;
+    static final int LATENCY_MILLIS = 4;
+    static final int GENERATION_MILLIS = 5;
+    private static final int FIELDS = 6;
+    
+    private final long slotMillis;
+    private final int slots;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray values;
+    
+    /**
+     * @param slotMillis 每个时间槽的长度
+     * @param slots 时间槽数量，窗口长度为两者之积
+     */
+    public RollingWindow(long slotMillis, int slots) {
+        this.slotMillis = slotMillis;
+        this.slots = slots;
+        this.epochs = new AtomicLongArray(slots);
+        this.values = new AtomicLongArray(slots * FIELDS);
+        for (int i = 0; i < slots; i++) {
+            epochs.set(i, -1);
+        }
+    }
+    
+    public long getWindowMillis() {
+        return slotMillis * slots;
+    }
+    
+    void add(long now, int field, long amount) {
+        if (amount == 0) {
+            return;
+        }
+        int slot = slotFor(now);
+        values.addAndGet(slot * FIELDS + field, amount);
+    }
+    
+    /**
+     * 返回当前时间所在的槽位，槽位上保存的是更早一轮的数据时先清零
+     */
+    private int slotFor(long now) {
+        long epoch = now / slotMillis;
+        int slot = (int) (epoch % slots);
+        long current = epochs.get(slot);
+        if (current < epoch && epochs.compareAndSet(slot, current, epoch)) {
+            for (int field = 0; field < FIELDS; field++) {
+                values.set(slot * FIELDS + field, 0);
+            }
+        }
+        return slot;
+    }
+    
+    /**
+     * 汇总窗口内（最近slots个时间槽）的计数
+     */
+    public Totals totals(long now) {
+        long epoch = now / slotMillis;
+        long[] sums = new long[FIELDS];
+        for (int slot = 0; slot < slots; slot++) {
+            long slotEpoch = epochs.get(slot);
+            if (slotEpoch >= 0 && epoch - slotEpoch < slots) {
+                for (int field = 0; field < FIELDS; field++) {
+                    sums[field] += values.get(slot * FIELDS + field);
+                }
+            }
+        }
+        return new Totals(sums, getWindowMillis());
+    }
+    
+    /**
+     * 窗口内计数的快照
+     */
+    public static final class Totals {
+        private final long[] sums;
+        private final long windowMillis;
+        
+        private Totals(long[] sums, long windowMillis) {
+            this.sums = sums;
+            this.windowMillis = windowMillis;
+        }
+        
+        public long getRequests() {
+            return sums[REQUESTS];
+        }
+        
+        public long getErrors() {
+            return sums[ERRORS];
+        }
+        
+        public long getInputTokens() {
+            return sums[INPUT_TOKENS];
+        }
+        
+        public long getOutputTokens() {
+            return sums[OUTPUT_TOKENS];
+        }
+        
+        /**
+         * 成功请求的平均总延迟
+         */
+        public long getAverageLatencyMillis() {
+            long succeeded = sums[REQUESTS] - sums[ERRORS];
+            return succeeded > 0 ? sums[LATENCY_MILLIS] / succeeded : 0;
+        }
+        
+        /**
+         * 输出速度（输出Token数除以生成耗时）
+         */
+        public double getTokensPerSecond() {
+            return sums[GENERATION_MILLIS] > 0 ? sums[OUTPUT_TOKENS] * 1000.0 / sums[GENERATION_MILLIS] : 0;
+        }
+        
+        /**
+         * 窗口内平均每秒消耗的Token数（输入加输出）
+         */
+        public double getThroughput() {
+            return (sums[INPUT_TOKENS] + sums[OUTPUT_TOKENS]) * 1000.0 / windowMillis;
+        }
+    }
+}
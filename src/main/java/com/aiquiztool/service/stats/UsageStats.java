@@ -0,0 +1,61 @@
+package com.aiquiztool.service.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 调用统计，按提供商和模型分别记录
+ * @author Tang En Dong
+ */
+public class UsageStats {
+    private static UsageStats instance;
+    
+    private final Map<String, ProviderStats> stats = new ConcurrentHashMap<>();
+    
+    private UsageStats() {
+    }
+    
+    public static synchronized UsageStats getInstance() {
+        if (instance == null) {
+            instance = new UsageStats();
+        }
+        return instance;
+    }
+    
+    /**
+     * 获取提供商和模型对应的统计，第一次调用时创建
+     */
+    public ProviderStats forModel(String provider, String model) {
+        String key = provider + "/" + model;
+        ProviderStats existing = stats.get(key);
+        return existing != null ? existing : stats.computeIfAbsent(key, k -> new ProviderStats(provider, model));
+    }
+    
+    /**
+     * 所有提供商和模型的统计，按名称排序
+     */
+    public List<ProviderStats> getAll() {
+        List<ProviderStats> all = new ArrayList<>(stats.values());
+        all.sort(Comparator.comparing(ProviderStats::getProvider).thenComparing(ProviderStats::getModel));
+        return all;
+    }
+    
+    public String summary() {
+        List<ProviderStats> all = getAll();
+        if (all.isEmpty()) {
+            return "暂无调用记录";
+        }
+        StringBuilder text = new StringBuilder();
+        for (ProviderStats providerStats : all) {
+            text.append(providerStats.describe());
+        }
+        return text.toString().trim();
+    }
+    
+    public void reset() {
+        stats.clear();
+    }
+}
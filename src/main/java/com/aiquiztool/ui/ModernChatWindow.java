@@ -1,7 +1,13 @@
 package com.aiquiztool.ui;
 
+import com.aiquiztool.service.AIRequestHandle;
 import com.aiquiztool.service.AIService;
+import com.aiquiztool.service.CircuitBreaker;
+import com.aiquiztool.service.ConnectionWarmer;
+import com.aiquiztool.service.ConversationContext;
+import com.aiquiztool.service.RequestOptions;
 import com.aiquiztool.service.SpeechRecognitionService;
+import com.aiquiztool.service.StreamListener;
 import com.aiquiztool.ui.theme.ModernTheme;
 import com.aiquiztool.ui.animation.UIAnimator;
 import com.aiquiztool.ui.components.ModernButton;
@@ -13,11 +19,21 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 聊天窗口
@@ -25,19 +41,36 @@ import java.time.format.DateTimeFormatter;
  */
 public class ModernChatWindow extends JFrame {
     private static final Logger logger = LoggerFactory.getLogger(ModernChatWindow.class);
+    private static final String CONTENT_AREA_KEY = "contentArea";
     
     private JPanel chatPanel;
     private JScrollPane scrollPane;
     private ModernTextField inputField;
     private ModernButton sendButton;
     private ModernButton recordButton;
+    private ModernButton newChatButton;
     private JLabel statusLabel;
+    private JLabel tokenLabel;
+    private Timer tokenCountTimer;
+    
+    /**
+     * Token统计在后台线程中进行，长文本的统计不阻塞界面；只在界面线程中读写序号，过期的统计结果直接丢弃
+     */
+    private final ExecutorService tokenCountExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "token-counter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int tokenCountSequence = 0;
+    private boolean sendPending = false;
     
     private AIService aiService;
     private SpeechRecognitionService speechService;
     private ConfigManager configManager;
     
     private boolean isRecording = false;
+    private AIRequestHandle currentRequest;
+    private final ConversationContext conversation = new ConversationContext();
     
     public ModernChatWindow() {
         configManager = ConfigManager.getInstance();
@@ -75,10 +108,18 @@ public class ModernChatWindow extends JFrame {
         recordButton.setPreferredSize(new Dimension(50, ModernTheme.Dimensions.BUTTON_HEIGHT));
         recordButton.setToolTipText("语音输入");
         
+        newChatButton = new ModernButton("新对话", ModernButton.ButtonType.OUTLINE);
+        newChatButton.setToolTipText("清空上下文，开始新的对话");
+        
         statusLabel = new JLabel("就绪");
         statusLabel.setFont(ModernTheme.Fonts.SMALL);
         statusLabel.setForeground(ModernTheme.getTextMuted());
         
+        tokenLabel = new JLabel(" ");
+        tokenLabel.setFont(ModernTheme.Fonts.SMALL);
+        tokenLabel.setForeground(ModernTheme.getTextMuted());
+        tokenLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+        
         addWelcomeMessage();
     }
     
@@ -163,6 +204,7 @@ public class ModernChatWindow extends JFrame {
         
         topPanel.add(titleLabel, BorderLayout.WEST);
         topPanel.add(statusLabel, BorderLayout.CENTER);
+        topPanel.add(newChatButton, BorderLayout.EAST);
         
         return topPanel;
     }
@@ -188,6 +230,7 @@ public class ModernChatWindow extends JFrame {
         inputPanel.add(sendButton, BorderLayout.EAST);
         
         bottomPanel.add(inputPanel, BorderLayout.CENTER);
+        bottomPanel.add(tokenLabel, BorderLayout.SOUTH);
         
         return bottomPanel;
     }
@@ -202,12 +245,45 @@ public class ModernChatWindow extends JFrame {
         // 录音按钮事件
         recordButton.addActionListener(e -> toggleRecording());
         
+        // 新对话按钮事件
+        newChatButton.addActionListener(e -> startNewConversation());
+        
+        // 输入变化后稍作延迟再统计Token，连续输入时只统计一次
+        tokenCountTimer = new Timer(150, e -> updateTokenCount());
+        tokenCountTimer.setRepeats(false);
+        inputField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                tokenCountTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                tokenCountTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                tokenCountTimer.restart();
+            }
+        });
+        
+        // Esc停止当前回复
+        getRootPane().registerKeyboardAction(e -> cancelCurrentRequest(),
+            KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0),
+            JComponent.WHEN_IN_FOCUSED_WINDOW);
     }
     
     private void initializeServices() {
         try {
             aiService = new AIService();
             speechService = new SpeechRecognitionService();
+            // 说完话或达到最长录音时间后自动停止录音并识别
+            speechService.setEndOfSpeechListener(() -> SwingUtilities.invokeLater(() -> {
+                if (speechService.isRecording()) {
+                    stopRecording();
+                }
+            }));
         } catch (Exception e) {
             logger.error("初始化服务时发生错误", e);
             showNotification("初始化服务失败: " + e.getMessage(), NotificationType.ERROR);
@@ -228,6 +304,19 @@ public class ModernChatWindow extends JFrame {
             }
         });
         
+        // 窗口可见期间保持到服务主机的连接处于热状态
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                ConnectionWarmer.getInstance().startKeepWarm();
+            }
+            
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                ConnectionWarmer.getInstance().stopKeepWarm();
+            }
+        });
+        
         // 设置窗口图标（如果有的话）
         try {
             // 这里可以设置窗口图标
@@ -248,30 +337,146 @@ public class ModernChatWindow extends JFrame {
             inputField.showError();
             return;
         }
+        if (sendPending) {
+            return;
+        }
         
-        // 显示用户消息
+        // 超出模型上下文的问题不发送；统计在后台进行，期间重复按下发送不会重复提交
+        sendPending = true;
+        countTokensAsync(message, (tokens, limit) -> {
+            sendPending = false;
+            if (tokens > limit) {
+                inputField.showError();
+                showNotification("问题过长: 约" + tokens + "个Token，当前模型最多" + limit + "个Token",
+                    NotificationType.WARNING);
+                return;
+            }
+            send(message);
+        });
+    }
+    
+    private void send(String message) {
+        // 显示用户消息；统计期间输入框中又输入了新内容时保留新内容
         addMessage("您", message, MessageType.USER, false);
-        inputField.setText("");
+        if (inputField.getText().trim().equals(message)) {
+            inputField.setText("");
+        }
         
         // 更新状态
         updateStatus("正在思考...", StatusType.PROCESSING);
         
-        // 异步发送到AI服务
-        new Thread(() -> {
-            try {
-                String response = aiService.getResponse(message);
-                SwingUtilities.invokeLater(() -> {
-                    addMessage("AI助手", response, MessageType.ASSISTANT, true);
-                    updateStatus("就绪", StatusType.READY);
-                });
-            } catch (Exception e) {
-                logger.error("获取AI回复时发生错误", e);
-                SwingUtilities.invokeLater(() -> {
-                    showNotification("获取AI回复失败: " + e.getMessage(), NotificationType.ERROR);
-                    updateStatus("就绪", StatusType.READY);
-                });
+        // 异步发送到AI服务，回复以流式方式逐段显示
+        JTextArea[] contentArea = new JTextArea[1];
+        StreamListener listener = delta -> SwingUtilities.invokeLater(() -> {
+            if (contentArea[0] == null) {
+                contentArea[0] = addStreamingMessage("AI助手");
+                updateStatus("正在回复...", StatusType.PROCESSING);
             }
-        }).start();
+            contentArea[0].append(delta);
+            scrollToBottom();
+        });
+        AIRequestHandle request = aiService.getResponseAsync(message, listener,
+            new RequestOptions().setConversation(conversation));
+        
+        // 新问题取代仍在进行中的旧问题；先提交新请求再取消旧请求，
+        // 相同的问题会加入进行中的调用而不是重新请求
+        AIRequestHandle previous = currentRequest;
+        currentRequest = request;
+        if (previous != null && !previous.isDone()) {
+            previous.cancel();
+        }
+        
+        request.getFuture().whenComplete((response, throwable) -> SwingUtilities.invokeLater(() -> {
+            if (currentRequest == request) {
+                currentRequest = null;
+            }
+            
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof CancellationException) {
+                if (contentArea[0] != null) {
+                    contentArea[0].append("（已停止）");
+                }
+                return;
+            }
+            
+            // 鼠标悬停在状态栏上可查看调用统计，有提供商处于熔断状态时显示熔断情况
+            statusLabel.setToolTipText(CircuitBreaker.anyOpen() ? CircuitBreaker.describeAll()
+                : toHtml(aiService.getUsageStats()));
+            
+            if (cause != null) {
+                logger.error("获取AI回复时发生错误", cause);
+                showNotification("获取AI回复失败: " + cause.getMessage(), NotificationType.ERROR);
+            } else {
+                updateStatus("就绪", StatusType.READY);
+            }
+        }));
+    }
+    
+    /**
+     * 多行文本转为工具提示可以显示的HTML
+     */
+    private static String toHtml(String text) {
+        return "<html>" + text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+            .replace("\n", "<br>") + "</html>";
+    }
+    
+    /**
+     * 停止当前正在进行的回复，释放其占用的连接
+     */
+    private void cancelCurrentRequest() {
+        if (currentRequest != null && !currentRequest.isDone()) {
+            currentRequest.cancel();
+            updateStatus("已停止回复", StatusType.READY);
+        }
+        currentRequest = null;
+    }
+    
+    /**
+     * 统计输入框中问题的Token数，超出限制时标红
+     */
+    private void updateTokenCount() {
+        String text = inputField.getText();
+        int sequence = ++tokenCountSequence;
+        if (aiService == null || text.trim().isEmpty()) {
+            tokenLabel.setText(" ");
+            return;
+        }
+        
+        countTokensAsync(text, (tokens, limit) -> {
+            if (sequence != tokenCountSequence) {
+                return;
+            }
+            tokenLabel.setText("Token: " + tokens + " / " + limit);
+            tokenLabel.setForeground(tokens > limit ? ModernTheme.getDanger() : ModernTheme.getTextMuted());
+        });
+    }
+    
+    /**
+     * 在后台线程中统计文本的Token数和当前模型的上限，完成后在界面线程中回调
+     */
+    private void countTokensAsync(String text, TokenCountCallback callback) {
+        CompletableFuture.runAsync(() -> {
+            int tokens = aiService.countTokens(text);
+            int limit = aiService.getPromptTokenLimit();
+            SwingUtilities.invokeLater(() -> callback.counted(tokens, limit));
+        }, tokenCountExecutor).exceptionally(e -> {
+            logger.warn("统计Token数时发生错误", e);
+            SwingUtilities.invokeLater(() -> sendPending = false);
+            return null;
+        });
+    }
+    
+    /**
+     * 开始新对话：停止当前回复，清空上下文和聊天记录
+     */
+    private void startNewConversation() {
+        cancelCurrentRequest();
+        conversation.clear();
+        chatPanel.removeAll();
+        chatPanel.revalidate();
+        chatPanel.repaint();
+        addWelcomeMessage();
+        updateStatus("就绪", StatusType.READY);
     }
     
     private void addMessage(String sender, String content, MessageType type, boolean animate) {
@@ -287,11 +492,26 @@ public class ModernChatWindow extends JFrame {
             }
             
             // 滚动到底部
-            SwingUtilities.invokeLater(() -> {
-                chatPanel.revalidate();
-                JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
-                verticalScrollBar.setValue(verticalScrollBar.getMaximum());
-            });
+            scrollToBottom();
+        });
+    }
+    
+    /**
+     * 添加一条空的AI消息用于流式追加内容，需在EDT中调用
+     */
+    private JTextArea addStreamingMessage(String sender) {
+        JPanel messagePanel = createMessagePanel(sender, "", MessageType.ASSISTANT);
+        chatPanel.add(messagePanel);
+        chatPanel.add(Box.createVerticalStrut(ModernTheme.Dimensions.PADDING_SMALL));
+        scrollToBottom();
+        return (JTextArea) messagePanel.getClientProperty(CONTENT_AREA_KEY);
+    }
+    
+    private void scrollToBottom() {
+        SwingUtilities.invokeLater(() -> {
+            chatPanel.revalidate();
+            JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
+            verticalScrollBar.setValue(verticalScrollBar.getMaximum());
         });
     }
     
@@ -369,6 +589,8 @@ public class ModernChatWindow extends JFrame {
             ModernTheme.Dimensions.PADDING_MEDIUM
         ));
         
+        messagePanel.putClientProperty(CONTENT_AREA_KEY, contentArea);
+        
         bubblePanel.add(senderLabel, BorderLayout.NORTH);
         bubblePanel.add(contentArea, BorderLayout.CENTER);
         bubblePanel.add(timeLabel, BorderLayout.SOUTH);
@@ -576,6 +798,10 @@ public class ModernChatWindow extends JFrame {
         INFO, SUCCESS, WARNING, ERROR
     }
     
+    private interface TokenCountCallback {
+        void counted(int tokens, int limit);
+    }
+    
     // 圆角消息边框
     private static class RoundedMessageBorder implements Border {
         private Color color;
@@ -1,6 +1,7 @@
 package com.aiquiztool.ui;
 
 import com.aiquiztool.config.ConfigManager;
+import com.aiquiztool.service.AIService;
 import com.aiquiztool.ui.theme.ModernTheme;
 import com.aiquiztool.ui.animation.UIAnimator;
 import com.aiquiztool.ui.components.ModernButton;
@@ -61,6 +62,7 @@ public class ModernConfigWindow extends JFrame {
     private ModernButton resetButton;
     
     private ConfigManager configManager;
+    private AIService testService;
     
     public ModernConfigWindow() {
         configManager = ConfigManager.getInstance();
@@ -814,9 +816,8 @@ public class ModernConfigWindow extends JFrame {
                 configManager.setOpenaiApiKey(apiKey);
                 configManager.setOpenaiApiUrl(apiUrl);
                 
-                // 创建AI服务实例进行测试
-                com.aiquiztool.service.AIService testService = new com.aiquiztool.service.AIService();
-                boolean success = testService.testConnection();
+                // 复用同一个AI服务实例进行测试，连接来自共享连接池
+                boolean success = getTestService().testConnection();
                 
                 // 恢复原始配置
                 configManager.setOpenaiApiKey(originalApiKey);
@@ -845,6 +846,13 @@ public class ModernConfigWindow extends JFrame {
         }).start();
     }
     
+    private synchronized AIService getTestService() {
+        if (testService == null) {
+            testService = new AIService();
+        }
+        return testService;
+    }
+    
     private void resetToDefaults() {
         int result = JOptionPane.showConfirmDialog(
             this,
@@ -1,5 +1,7 @@
 package com.aiquiztool.ui;
 
+import com.aiquiztool.service.ConnectionWarmer;
+import com.aiquiztool.service.HttpClientManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +34,9 @@ public class SystemTrayManager {
         chatWindow = new ModernChatWindow();
         configWindow = new ModernConfigWindow();
         
+        // 后台预热AI和语音服务连接，缩短首次提问的等待时间
+        ConnectionWarmer.getInstance().warmUp();
+        
         logger.info("系统托盘管理器初始化完成");
     }
     
@@ -127,6 +132,7 @@ public class SystemTrayManager {
         
         if (result == JOptionPane.YES_OPTION) {
             logger.info("用户选择退出应用程序");
+            HttpClientManager.getInstance().shutdown();
             System.exit(0);
         }
     }
@@ -0,0 +1,111 @@
+package com.aiquiztool.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * BpeTokenizer的测试：计数必须与tiktoken一致，参照实现为jtokkit
+ * @author Tang En Dong
+ */
+class BpeTokenizerTest {
+
+    private static final List<String> SAMPLES = Arrays.asList(
+        "",
+        "hello world",
+        "tiktoken is great!",
+        "The quick brown fox jumps over the lazy dog. It's 2024, isn't it? I'LL see you'd've",
+        "请用中文回答：下列哪一项不是哺乳动物？A. 鲸鱼 B. 蝙蝠 C. 企鹅 D. 海豚",
+        "混合 mixed 文本 text，全角　空格和ｆｕｌｌ　ｗｉｄｔｈ字符",
+        "public static void main(String[] args) {\n    System.out.println(\"hi\");\n}\n",
+        "def f(x):\r\n\treturn x ** 2  # square\n\n\n",
+        "   leading and trailing spaces   \n  ",
+        "1234567890 3.14159 -42 1e10 0x1F 2,147,483,647",
+        "emoji 😀👍🏽🇨🇳 and symbols ©®™ → ∑∫√",
+        "Ünïcödé àccénts naïve café, Привет мир, こんにちは世界, 안녕하세요",
+        "https://example.com/path/to/page?query=1&b=2#frag",
+        "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"
+    );
+    
+    @Test
+    void vocabulariesAreBundled() {
+        // 缺少词表时运行中只记录错误并改用估算，这里确保打包的词表都能加载
+        assertInstanceOf(BpeTokenizer.class, BpeTokenizer.loaded("gpt-4"));
+        assertInstanceOf(BpeTokenizer.class, BpeTokenizer.loaded("gpt-4o"));
+    }
+    
+    @Test
+    void matchesKnownCl100kCounts() {
+        TokenCounter counter = BpeTokenizer.loaded("gpt-4");
+        assertEquals(0, counter.count(""));
+        assertEquals(2, counter.count("hello world"));
+        assertEquals(6, counter.count("tiktoken is great!"));
+    }
+    
+    @Test
+    void matchesTiktokenForCl100k() {
+        assertMatches(BpeTokenizer.loaded("gpt-4"), Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.CL100K_BASE));
+    }
+    
+    @Test
+    void matchesTiktokenForO200k() {
+        assertMatches(BpeTokenizer.loaded("gpt-4o"), Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.O200K_BASE));
+    }
+    
+    @Test
+    void longUnpunctuatedChineseMatchesTiktoken() {
+        // 不含标点的中文是一整个预分词片段，检查长片段的合并顺序
+        String base = "人工智能是计算机科学的一个分支它企图了解智能的实质并生产出一种新的能以人类智能相似的方式做出反应的智能机器";
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(4);
+        while (text.length() < 5000) {
+            text.append(base.charAt(random.nextInt(base.length())));
+        }
+        
+        Encoding cl100k = Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+        Encoding o200k = Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.O200K_BASE);
+        assertEquals(cl100k.countTokens(text.toString()), BpeTokenizer.loaded("gpt-4").count(text));
+        assertEquals(o200k.countTokens(text.toString()), BpeTokenizer.loaded("gpt-4o").count(text));
+    }
+    
+    @Test
+    void choosesEncodingByModel() {
+        assertEquals(BpeTokenizer.Encoding.O200K, BpeTokenizer.encodingFor("gpt-4o-mini"));
+        assertEquals(BpeTokenizer.Encoding.O200K, BpeTokenizer.encodingFor("o3-mini"));
+        assertEquals(BpeTokenizer.Encoding.O200K, BpeTokenizer.encodingFor("gpt-5-mini"));
+        assertEquals(BpeTokenizer.Encoding.O200K, BpeTokenizer.encodingFor("chatgpt-4o-latest"));
+        assertEquals(BpeTokenizer.Encoding.O200K, BpeTokenizer.encodingFor("gpt-4.5-preview"));
+        assertEquals(BpeTokenizer.Encoding.O200K, BpeTokenizer.encodingFor("openai/gpt-4.1"));
+        assertEquals(BpeTokenizer.Encoding.CL100K, BpeTokenizer.encodingFor("gpt-4-turbo"));
+        assertEquals(BpeTokenizer.Encoding.CL100K, BpeTokenizer.encodingFor("gpt-3.5-turbo"));
+        assertEquals(BpeTokenizer.Encoding.CL100K, BpeTokenizer.encodingFor(null));
+        assertSame(BpeTokenizer.forModel("gpt-4"), BpeTokenizer.forModel("gpt-3.5-turbo"));
+    }
+    
+    @Test
+    void repeatedCountsUseCacheConsistently() {
+        TokenCounter counter = BpeTokenizer.loaded("gpt-4");
+        String text = String.join(" ", SAMPLES);
+        int first = counter.count(text);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(first, counter.count(text));
+        }
+    }
+    
+    private static void assertMatches(TokenCounter counter, Encoding reference) {
+        for (String text : SAMPLES) {
+            assertEquals(reference.countTokens(text), counter.count(text), "计数与tiktoken不一致: " + text);
+        }
+        String all = String.join("\n", SAMPLES);
+        assertEquals(reference.countTokens(all), counter.count(all));
+    }
+}
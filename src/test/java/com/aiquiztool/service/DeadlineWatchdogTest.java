@@ -0,0 +1,146 @@
+package com.aiquiztool.service;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DeadlineWatchdog的测试：排队等待并发名额的时间不计入连接阶段
+ * @author Tang En Dong
+ */
+class DeadlineWatchdogTest {
+
+    private ServerSocket server;
+    private OkHttpClient client;
+    
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    new Thread(() -> respond(socket)).start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .addInterceptor(DeadlineWatchdog.DISPATCH_INTERCEPTOR)
+            .addNetworkInterceptor(DeadlineWatchdog.NETWORK_INTERCEPTOR)
+            .build();
+    }
+    
+    @AfterEach
+    void stopServer() throws IOException {
+        server.close();
+        client.dispatcher().executorService().shutdownNow();
+    }
+    
+    @Test
+    void queuedTimeDoesNotCountAsConnect() throws Exception {
+        CompletableFuture<String> first = send("/delay/600", new Deadline(200, 0, 0, 0));
+        DeadlineWatchdog queuedWatchdog = new DeadlineWatchdog(new Deadline(200, 0, 0, 0), false);
+        CompletableFuture<String> second = send("/delay/0", queuedWatchdog);
+        
+        assertEquals("ok", first.get(5, TimeUnit.SECONDS));
+        assertEquals("ok", second.get(5, TimeUnit.SECONDS));
+        assertNull(queuedWatchdog.getExpired());
+    }
+    
+    @Test
+    void queuedRequestStillRespectsTotalLimit() throws Exception {
+        send("/delay/600", new Deadline(0, 0, 0, 0));
+        DeadlineWatchdog queuedWatchdog = new DeadlineWatchdog(new Deadline(200, 0, 0, 300), false);
+        CompletableFuture<String> second = send("/delay/0", queuedWatchdog);
+        
+        assertTrue(second.handle((text, e) -> e != null).get(5, TimeUnit.SECONDS));
+        assertEquals(Deadline.Phase.TOTAL, queuedWatchdog.getExpired());
+    }
+    
+    @Test
+    void slowFirstByteExpires() throws Exception {
+        DeadlineWatchdog watchdog = new DeadlineWatchdog(new Deadline(1000, 200, 0, 0), false);
+        CompletableFuture<String> call = send("/delay/2000", watchdog);
+        
+        assertTrue(call.handle((text, e) -> e != null).get(5, TimeUnit.SECONDS));
+        assertEquals(Deadline.Phase.FIRST_BYTE, watchdog.getExpired());
+    }
+    
+    private CompletableFuture<String> send(String path, Deadline deadline) {
+        return send(path, new DeadlineWatchdog(deadline, false));
+    }
+    
+    private CompletableFuture<String> send(String path, DeadlineWatchdog watchdog) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Request request = watchdog.tag(new Request.Builder()
+            .url("http://127.0.0.1:" + server.getLocalPort() + path).build());
+        Call call = client.newCall(request);
+        watchdog.start(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                watchdog.finish();
+                result.completeExceptionally(e);
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (Response r = response) {
+                    result.complete(r.body().string());
+                } finally {
+                    watchdog.finish();
+                }
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * 按路径/delay/毫秒数延迟后返回ok
+     */
+    private static void respond(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+            String requestLine = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                // 跳过请求头
+            }
+            long delay = Long.parseLong(requestLine.split(" ")[1].substring("/delay/".length()));
+            Thread.sleep(delay);
+            OutputStream out = s.getOutputStream();
+            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // 客户端已取消
+        }
+    }
+}
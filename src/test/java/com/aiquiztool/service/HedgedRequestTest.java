@@ -0,0 +1,195 @@
+package com.aiquiztool.service;
+
+import com.aiquiztool.service.provider.AIProvider;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HedgedRequest的测试：胜出的请求取消其余请求，取消整个请求时取消所有已发起的请求
+ * @author Tang En Dong
+ */
+class HedgedRequestTest {
+
+    private static final long NEVER = 60_000;
+    
+    private final List<AIRequestHandle> attempts = new CopyOnWriteArrayList<>();
+    private final List<StreamListener> listeners = new CopyOnWriteArrayList<>();
+    private final StringBuilder received = new StringBuilder();
+    
+    private AIRequestHandle start(int providers, long hedgeDelayMs) {
+        return start(providers, hedgeDelayMs, received::append);
+    }
+    
+    private AIRequestHandle start(int providers, long hedgeDelayMs, StreamListener listener) {
+        List<AIProvider> chain = new ArrayList<>();
+        for (int i = 0; i < providers; i++) {
+            chain.add(new StubProvider("提供商" + i));
+        }
+        HedgedRequest.Starter starter = (provider, attemptListener) -> {
+            AIRequestHandle attempt = new AIRequestHandle();
+            attempts.add(attempt);
+            listeners.add(attemptListener);
+            return attempt;
+        };
+        return new HedgedRequest(chain, starter, hedgeDelayMs, listener).start();
+    }
+    
+    private void awaitAttempts(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (attempts.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, attempts.size());
+    }
+    
+    @Test
+    void fastProviderAnswersAlone() throws InterruptedException {
+        AIRequestHandle handle = start(3, NEVER);
+        listeners.get(0).onDelta("快");
+        attempts.get(0).complete("快");
+        
+        assertEquals("快", handle.getFuture().join());
+        assertEquals("快", received.toString());
+        Thread.sleep(50);
+        assertEquals(1, attempts.size());
+    }
+    
+    @Test
+    void slowProviderIsHedgedAndLoserCancelled() throws InterruptedException {
+        AIRequestHandle handle = start(2, 10);
+        awaitAttempts(2);
+        
+        listeners.get(1).onDelta("备用");
+        assertTrue(attempts.get(0).isCancelled());
+        assertFalse(attempts.get(1).isCancelled());
+        
+        // 落败请求之后的增量不再转发
+        listeners.get(0).onDelta("迟到");
+        attempts.get(1).complete("备用");
+        assertEquals("备用", handle.getFuture().join());
+        assertEquals("备用", received.toString());
+    }
+    
+    @Test
+    void slowNonStreamAnswerIsNotHedged() throws InterruptedException {
+        AIRequestHandle handle = start(2, 10, null);
+        Thread.sleep(100);
+        assertEquals(1, attempts.size());
+        
+        attempts.get(0).complete("完整回复");
+        assertEquals("完整回复", handle.getFuture().join());
+        assertEquals(1, attempts.size());
+    }
+    
+    @Test
+    void nonStreamFailureStillFailsOver() throws InterruptedException {
+        AIRequestHandle handle = start(2, NEVER, null);
+        attempts.get(0).completeExceptionally(new IllegalStateException("第一个失败"));
+        awaitAttempts(2);
+        
+        attempts.get(1).complete("第二个");
+        assertEquals("第二个", handle.getFuture().join());
+    }
+    
+    @Test
+    void failureMovesToNextProviderImmediately() throws InterruptedException {
+        AIRequestHandle handle = start(3, NEVER);
+        attempts.get(0).completeExceptionally(new IllegalStateException("第一个失败"));
+        awaitAttempts(2);
+        
+        attempts.get(1).complete("第二个");
+        assertEquals("第二个", handle.getFuture().join());
+        assertEquals(2, attempts.size());
+    }
+    
+    @Test
+    void allProvidersFailingReportsFirstError() throws InterruptedException {
+        AIRequestHandle handle = start(2, NEVER);
+        IllegalStateException first = new IllegalStateException("第一个失败");
+        attempts.get(0).completeExceptionally(first);
+        awaitAttempts(2);
+        attempts.get(1).completeExceptionally(new IllegalStateException("第二个失败"));
+        
+        CompletionException error = assertThrows(CompletionException.class, () -> handle.getFuture().join());
+        assertSame(first, error.getCause());
+    }
+    
+    @Test
+    void winnerFailingAfterOutputDoesNotSwitchProvider() throws InterruptedException {
+        AIRequestHandle handle = start(2, NEVER);
+        listeners.get(0).onDelta("一半");
+        IllegalStateException failure = new IllegalStateException("中途断开");
+        attempts.get(0).completeExceptionally(failure);
+        
+        CompletionException error = assertThrows(CompletionException.class, () -> handle.getFuture().join());
+        assertSame(failure, error.getCause());
+        assertEquals(1, attempts.size());
+    }
+    
+    @Test
+    void cancellingHandleCancelsEveryAttempt() throws InterruptedException {
+        AIRequestHandle handle = start(3, 10);
+        awaitAttempts(3);
+        
+        handle.cancel();
+        for (AIRequestHandle attempt : attempts) {
+            assertTrue(attempt.isCancelled());
+        }
+        assertTrue(handle.isCancelled());
+    }
+    
+    @Test
+    void cancelledHandleStopsHedging() throws InterruptedException {
+        AIRequestHandle handle = start(2, 20);
+        handle.cancel();
+        assertTrue(attempts.get(0).isCancelled());
+        
+        Thread.sleep(100);
+        assertEquals(1, attempts.size());
+    }
+    
+    private static class StubProvider implements AIProvider {
+        private final String label;
+        
+        StubProvider(String label) {
+            this.label = label;
+        }
+        
+        @Override
+        public String getLabel() {
+            return label;
+        }
+        
+        @Override
+        public ProviderSettings getSettings() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void addAuthHeaders(Request.Builder builder) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Request buildRequest(String systemPrompt, List<ChatMessage> history, String userMessage, boolean stream) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public String readResponse(Response response, boolean stream, StreamListener listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
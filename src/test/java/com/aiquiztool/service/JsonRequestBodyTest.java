@@ -0,0 +1,60 @@
+package com.aiquiztool.service;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * JsonRequestBody的测试：内容只生成一次，需要长度时长度与发送的字节一致
+ * @author Tang En Dong
+ */
+class JsonRequestBodyTest {
+    
+    private static final byte[] AUDIO = new byte[10000];
+    
+    @Test
+    void sizedBodyIsGeneratedOnce() throws IOException {
+        AtomicInteger writes = new AtomicInteger();
+        JsonRequestBody body = JsonRequestBody.sized(generator -> {
+            writes.incrementAndGet();
+            generator.writeStartObject();
+            generator.writeStringField("text", "你好\n\"世界\"");
+            generator.writeFieldName("speech");
+            generator.writeBinary(AUDIO, 0, AUDIO.length);
+            generator.writeEndObject();
+        });
+        
+        long length = body.contentLength();
+        Buffer first = new Buffer();
+        body.writeTo(first);
+        // 重试时再发送一次
+        Buffer second = new Buffer();
+        body.writeTo(second);
+        
+        assertEquals(1, writes.get());
+        assertEquals(length, first.size());
+        assertEquals(first.readByteString(), second.readByteString());
+    }
+    
+    @Test
+    void streamedBodyIsChunkedAndGeneratedOncePerSend() throws IOException {
+        AtomicInteger writes = new AtomicInteger();
+        JsonRequestBody body = new JsonRequestBody(generator -> {
+            writes.incrementAndGet();
+            generator.writeStartObject();
+            generator.writeStringField("model", "gpt-4o");
+            generator.writeEndObject();
+        });
+        
+        assertEquals(-1, body.contentLength());
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        
+        assertEquals(1, writes.get());
+        assertEquals("{\"model\":\"gpt-4o\"}", sink.readUtf8());
+    }
+}
@@ -0,0 +1,158 @@
+package com.aiquiztool.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RequestCoalescer的测试：相同请求共享一次上游调用，单个调用方取消不影响其他调用方
+ * @author Tang En Dong
+ */
+class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final List<AIRequestHandle> upstreams = new ArrayList<>();
+    private final List<StreamListener> upstreamListeners = new ArrayList<>();
+    
+    private AIRequestHandle execute(String key, StreamListener listener) {
+        return coalescer.execute(key, listener, upstreamListener -> {
+            AIRequestHandle upstream = new AIRequestHandle();
+            upstreams.add(upstream);
+            upstreamListeners.add(upstreamListener);
+            return upstream;
+        });
+    }
+    
+    @Test
+    void identicalRequestsShareOneUpstreamCall() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        AIRequestHandle a = execute("q", first);
+        AIRequestHandle b = execute("q", second);
+        AIRequestHandle other = execute("other", null);
+        
+        assertNotSame(a, b);
+        assertEquals(2, upstreams.size());
+        assertEquals(1, coalescer.getCoalescedCount());
+        
+        upstreamListeners.get(0).onDelta("答案");
+        upstreamListeners.get(0).onComplete("答案");
+        upstreams.get(0).complete("答案");
+        
+        assertEquals("答案", a.getFuture().join());
+        assertEquals("答案", b.getFuture().join());
+        assertEquals("答案", first.text.toString());
+        assertEquals("答案", second.text.toString());
+        assertFalse(other.isDone());
+    }
+    
+    @Test
+    void lateSubscriberReceivesTextSoFar() {
+        Recorder first = new Recorder();
+        Recorder late = new Recorder();
+        execute("q", first);
+        upstreamListeners.get(0).onDelta("前半");
+        execute("q", late);
+        upstreamListeners.get(0).onDelta("后半");
+        
+        assertEquals("前半后半", first.text.toString());
+        assertEquals("前半后半", late.text.toString());
+    }
+    
+    @Test
+    void oneSubscriberCancellingLeavesUpstreamRunning() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        AIRequestHandle a = execute("q", first);
+        AIRequestHandle b = execute("q", second);
+        
+        a.cancel();
+        assertTrue(a.isCancelled());
+        assertThrows(CancellationException.class, () -> a.getFuture().join());
+        assertFalse(upstreams.get(0).isCancelled());
+        
+        upstreamListeners.get(0).onDelta("继续");
+        upstreams.get(0).complete("继续");
+        assertEquals("继续", b.getFuture().join());
+        assertEquals("继续", second.text.toString());
+        // 已取消的调用方不再收到增量
+        assertEquals("", first.text.toString());
+    }
+    
+    @Test
+    void allSubscribersCancellingCancelsUpstream() {
+        AIRequestHandle a = execute("q", new Recorder());
+        AIRequestHandle b = execute("q", null);
+        
+        a.cancel();
+        assertFalse(upstreams.get(0).isCancelled());
+        b.cancel();
+        assertTrue(upstreams.get(0).isCancelled());
+        
+        // 取消后的相同请求重新发起上游调用
+        AIRequestHandle c = execute("q", null);
+        assertEquals(2, upstreams.size());
+        assertFalse(c.isDone());
+    }
+    
+    @Test
+    void upstreamFailureReachesEverySubscriber() {
+        AIRequestHandle a = execute("q", new Recorder());
+        AIRequestHandle b = execute("q", null);
+        IllegalStateException failure = new IllegalStateException("上游失败");
+        upstreams.get(0).completeExceptionally(failure);
+        
+        CompletionException first = assertThrows(CompletionException.class, () -> a.getFuture().join());
+        CompletionException second = assertThrows(CompletionException.class, () -> b.getFuture().join());
+        assertEquals(failure, first.getCause());
+        assertEquals(failure, second.getCause());
+    }
+    
+    @Test
+    void upstreamCancellationCancelsSubscribers() {
+        AIRequestHandle a = execute("q", null);
+        AIRequestHandle b = execute("q", null);
+        upstreams.get(0).cancel();
+        
+        assertTrue(a.isCancelled());
+        assertTrue(b.isCancelled());
+    }
+    
+    @Test
+    void streamingJoinerOfNonStreamingRequestGetsFullTextAtEnd() {
+        Recorder streaming = new Recorder();
+        execute("q", null);
+        AIRequestHandle b = execute("q", streaming);
+        assertNull(upstreamListeners.get(0));
+        
+        upstreams.get(0).complete("完整回复");
+        assertEquals("完整回复", b.getFuture().join());
+        assertEquals("完整回复", streaming.text.toString());
+        assertEquals("完整回复", streaming.completed);
+    }
+    
+    private static class Recorder implements StreamListener {
+        final StringBuilder text = new StringBuilder();
+        String completed;
+        
+        @Override
+        public void onDelta(String delta) {
+            text.append(delta);
+        }
+        
+        @Override
+        public void onComplete(String fullText) {
+            completed = fullText;
+        }
+    }
+}
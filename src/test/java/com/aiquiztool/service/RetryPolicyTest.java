@@ -0,0 +1,92 @@
+package com.aiquiztool.service;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RetryPolicy的测试：退避时间的范围、重试次数上限和Retry-After的解析
+ * @author Tang En Dong
+ */
+class RetryPolicyTest {
+
+    @Test
+    void backoffGrowsWithinJitterBounds() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 5_000);
+        for (int retries = 0; retries < 10; retries++) {
+            long ceiling = Math.min(5_000, 100L << retries);
+            for (int i = 0; i < 200; i++) {
+                long delay = policy.delayMillis(retries, -1);
+                assertTrue(delay >= ceiling / 2 && delay <= ceiling,
+                    "第" + retries + "次重试等待" + delay + "ms，应在" + ceiling / 2 + "~" + ceiling + "之间");
+            }
+        }
+    }
+    
+    @Test
+    void largeRetryCountDoesNotOverflow() {
+        RetryPolicy policy = new RetryPolicy(Integer.MAX_VALUE, 1_000, 30_000);
+        long delay = policy.delayMillis(100, -1);
+        assertTrue(delay >= 15_000 && delay <= 30_000);
+    }
+    
+    @Test
+    void stopsAfterMaxRetries() {
+        RetryPolicy policy = new RetryPolicy(2, 100, 1_000);
+        assertTrue(policy.delayMillis(1, -1) >= 0);
+        assertEquals(-1, policy.delayMillis(2, -1));
+        assertEquals(-1, policy.delayMillis(2, 10));
+        assertEquals(-1, new RetryPolicy(0, 100, 1_000).delayMillis(0, -1));
+    }
+    
+    @Test
+    void retryAfterOverridesBackoffUnlessTooLong() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1_000);
+        assertEquals(0, policy.delayMillis(0, 0));
+        assertEquals(7_000, policy.delayMillis(0, 7_000));
+        assertEquals(60_000, policy.delayMillis(0, 60_000));
+        assertEquals(-1, policy.delayMillis(0, 60_001));
+    }
+    
+    @Test
+    void parsesRetryAfterHeaders() {
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response()));
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response("Retry-After", " ")));
+        assertEquals(-1, RetryPolicy.retryAfterMillis(response("Retry-After", "soon")));
+        assertEquals(3_000, RetryPolicy.retryAfterMillis(response("Retry-After", "3")));
+        assertEquals(1_500, RetryPolicy.retryAfterMillis(response("Retry-After", "1.5")));
+        assertEquals(250, RetryPolicy.retryAfterMillis(response("retry-after-ms", "250", "Retry-After", "3")));
+        // retry-after-ms无法解析时使用Retry-After
+        assertEquals(3_000, RetryPolicy.retryAfterMillis(response("retry-after-ms", "x", "Retry-After", "3")));
+    }
+    
+    @Test
+    void parsesRetryAfterHttpDate() {
+        String future = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        long millis = RetryPolicy.retryAfterMillis(response("Retry-After", future));
+        assertTrue(millis > 28_000 && millis <= 30_000, "HTTP日期解析结果: " + millis);
+        
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(30));
+        assertEquals(0, RetryPolicy.retryAfterMillis(response("Retry-After", past)));
+    }
+    
+    private static Response response(String... headers) {
+        Response.Builder builder = new Response.Builder()
+            .request(new Request.Builder().url("http://localhost/").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(429)
+            .message("Too Many Requests");
+        for (int i = 0; i < headers.length; i += 2) {
+            builder.addHeader(headers[i], headers[i + 1]);
+        }
+        return builder.build();
+    }
+}
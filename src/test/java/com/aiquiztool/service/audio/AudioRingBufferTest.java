@@ -0,0 +1,152 @@
+package com.aiquiztool.service.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * AudioRingBuffer的测试：环满、回绕后的顺序和长度、关闭后取完剩余帧
+ * @author Tang En Dong
+ */
+class AudioRingBufferTest {
+
+    @Test
+    void rejectsSlotsThatAreNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AudioRingBuffer(6, 16));
+        assertThrows(IllegalArgumentException.class, () -> new AudioRingBuffer(0, 16));
+    }
+    
+    @Test
+    void claimReturnsNullWhenFullAndReusesFramesAfterRelease() throws InterruptedException {
+        AudioRingBuffer ring = new AudioRingBuffer(4, 8);
+        List<byte[]> claimed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            byte[] frame = ring.claim();
+            assertNotNull(frame);
+            claimed.add(frame);
+            ring.publish(i + 1);
+        }
+        assertNull(ring.claim());
+        
+        byte[] first = ring.take();
+        assertSame(claimed.get(0), first);
+        assertEquals(1, ring.length());
+        // 归还之前槽位仍被占用
+        assertNull(ring.claim());
+        ring.release();
+        assertSame(first, ring.claim());
+    }
+    
+    @Test
+    void keepsOrderAndLengthsAcrossWraparound() throws InterruptedException {
+        AudioRingBuffer ring = new AudioRingBuffer(4, 8);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                int sequence = round * 3 + i;
+                byte[] frame = ring.claim();
+                assertNotNull(frame);
+                frame[0] = (byte) sequence;
+                ring.publish(1 + sequence % 8);
+            }
+            for (int i = 0; i < 3; i++) {
+                int sequence = round * 3 + i;
+                byte[] frame = ring.take();
+                assertEquals((byte) sequence, frame[0]);
+                assertEquals(1 + sequence % 8, ring.length());
+                ring.release();
+            }
+        }
+    }
+    
+    @Test
+    void producerAndConsumerThreadsSeeEveryFrameInOrder() throws Exception {
+        int total = 100_000;
+        AudioRingBuffer ring = new AudioRingBuffer(8, 4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] consumed = new long[1];
+        
+        Thread consumer = new Thread(() -> {
+            try {
+                int expected = 0;
+                byte[] frame;
+                while ((frame = ring.take()) != null) {
+                    int value = (frame[0] & 0xFF) | (frame[1] & 0xFF) << 8 | (frame[2] & 0xFF) << 16;
+                    assertEquals(expected, value);
+                    assertEquals(1 + expected % 4, ring.length());
+                    expected++;
+                    ring.release();
+                }
+                consumed[0] = expected;
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        consumer.start();
+        
+        for (int sequence = 0; sequence < total; sequence++) {
+            byte[] frame;
+            // 测试中不丢帧，环满时等待消费者
+            while ((frame = ring.claim()) == null) {
+                Thread.onSpinWait();
+            }
+            frame[0] = (byte) sequence;
+            frame[1] = (byte) (sequence >> 8);
+            frame[2] = (byte) (sequence >> 16);
+            ring.publish(1 + sequence % 4);
+        }
+        ring.close();
+        consumer.join(10_000);
+        
+        assertFalse(consumer.isAlive(), "消费者没有在关闭后结束");
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(total, consumed[0]);
+        assertEquals(0, ring.getOverruns());
+    }
+    
+    @Test
+    void closeDrainsPublishedFramesThenReturnsNull() throws InterruptedException {
+        AudioRingBuffer ring = new AudioRingBuffer(2, 4);
+        ring.claim()[0] = 7;
+        ring.publish(4);
+        ring.recordOverrun();
+        ring.close();
+        
+        byte[] frame = ring.take();
+        assertEquals(7, frame[0]);
+        assertEquals(4, ring.length());
+        ring.release();
+        assertNull(ring.take());
+        assertEquals(1, ring.getOverruns());
+    }
+    
+    @Test
+    void closeWakesWaitingConsumer() throws Exception {
+        AudioRingBuffer ring = new AudioRingBuffer(2, 4);
+        AtomicReference<Object> result = new AtomicReference<>("未返回");
+        Thread consumer = new Thread(() -> {
+            try {
+                result.set(ring.take());
+            } catch (InterruptedException e) {
+                result.set(e);
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        ring.close();
+        consumer.join(5_000);
+        
+        assertFalse(consumer.isAlive(), "等待中的消费者没有被唤醒");
+        assertNull(result.get());
+    }
+}
@@ -0,0 +1,131 @@
+package com.aiquiztool.service.audio;
+
+import org.jflac.FLACDecoder;
+import org.jflac.PCMProcessor;
+import org.jflac.metadata.StreamInfo;
+import org.jflac.util.ByteData;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FlacEncoder的往返测试：用参考解码器（jflac）解码编码结果，必须与输入的PCM逐字节相同
+ * @author Tang En Dong
+ */
+class FlacEncoderTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    
+    @Test
+    void speechLikeSignalRoundTrips() throws IOException {
+        // 3.3秒，最后一块不满4096个采样
+        Random random = new Random(1);
+        int samples = SAMPLE_RATE * 33 / 10;
+        short[] pcm = new short[samples];
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double envelope = (t % 0.5) < 0.35 ? 1.0 : 0.05;
+            pcm[i] = clip(envelope * (6000 * Math.sin(2 * Math.PI * 180 * t) + 2000 * Math.sin(2 * Math.PI * 720 * t))
+                + random.nextGaussian() * 60);
+        }
+        
+        byte[] input = toBytes(pcm);
+        byte[] flac = new FlacEncoder(SAMPLE_RATE, 1).encode(input, 0, input.length);
+        
+        assertArrayEquals(input, decode(flac, SAMPLE_RATE, 1, samples));
+        assertTrue(flac.length < input.length * 3 / 4, "语音类信号应当被压缩: " + flac.length + " / " + input.length);
+    }
+    
+    @Test
+    void silenceAndFullScaleNoiseRoundTrip() throws IOException {
+        // 静音走常数子帧，满幅白噪声走原样子帧，中间是固定预测子帧
+        Random random = new Random(2);
+        short[] pcm = new short[4096 * 3];
+        for (int i = 4096; i < 4096 * 2; i++) {
+            pcm[i] = (short) random.nextInt(1 << 16);
+        }
+        for (int i = 4096 * 2; i < pcm.length; i++) {
+            pcm[i] = (short) (i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE);
+        }
+        
+        byte[] input = toBytes(pcm);
+        byte[] flac = new FlacEncoder(SAMPLE_RATE, 1).encode(input, 0, input.length);
+        
+        assertArrayEquals(input, decode(flac, SAMPLE_RATE, 1, pcm.length));
+    }
+    
+    @Test
+    void stereoRoundTrips() throws IOException {
+        int frames = 5000;
+        short[] pcm = new short[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            pcm[2 * i] = clip(8000 * Math.sin(2 * Math.PI * 440 * i / 44100.0));
+            pcm[2 * i + 1] = clip(-3000 * Math.cos(2 * Math.PI * 97 * i / 44100.0));
+        }
+        
+        byte[] input = toBytes(pcm);
+        byte[] flac = new FlacEncoder(44100, 2).encode(input, 0, input.length);
+        
+        assertArrayEquals(input, decode(flac, 44100, 2, frames));
+    }
+    
+    @Test
+    void encodesRangeOfLargerArray() throws IOException {
+        short[] pcm = new short[3000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (i * 7);
+        }
+        byte[] input = toBytes(pcm);
+        byte[] padded = new byte[input.length + 100];
+        System.arraycopy(input, 0, padded, 50, input.length);
+        
+        byte[] flac = new FlacEncoder(SAMPLE_RATE, 1).encode(padded, 50, input.length);
+        
+        assertArrayEquals(input, decode(flac, SAMPLE_RATE, 1, pcm.length));
+    }
+    
+    private static byte[] decode(byte[] flac, int sampleRate, int channels, long totalSamples) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamInfo[] info = new StreamInfo[1];
+        FLACDecoder decoder = new FLACDecoder(new ByteArrayInputStream(flac));
+        decoder.addPCMProcessor(new PCMProcessor() {
+            @Override
+            public void processStreamInfo(StreamInfo streamInfo) {
+                info[0] = streamInfo;
+            }
+            
+            @Override
+            public void processPCM(ByteData pcm) {
+                out.write(pcm.getData(), 0, pcm.getLen());
+            }
+        });
+        decoder.decode();
+        
+        assertEquals(0, decoder.getBadFrames(), "参考解码器报告了损坏的帧");
+        assertEquals(sampleRate, info[0].getSampleRate());
+        assertEquals(channels, info[0].getChannels());
+        assertEquals(16, info[0].getBitsPerSample());
+        assertEquals(totalSamples, info[0].getTotalSamples());
+        return out.toByteArray();
+    }
+    
+    private static byte[] toBytes(short[] pcm) {
+        byte[] bytes = new byte[pcm.length * 2];
+        for (int i = 0; i < pcm.length; i++) {
+            bytes[2 * i] = (byte) pcm[i];
+            bytes[2 * i + 1] = (byte) (pcm[i] >> 8);
+        }
+        return bytes;
+    }
+    
+    private static short clip(double value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+}
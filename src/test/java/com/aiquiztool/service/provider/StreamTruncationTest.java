@@ -0,0 +1,102 @@
+package com.aiquiztool.service.provider;
+
+import com.aiquiztool.service.ProviderSettings;
+import com.aiquiztool.service.StreamListener;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 流式回复的结束判断：收到结束事件才算完整回复，提前断开的连接按网络错误处理
+ * @author Tang En Dong
+ */
+class StreamTruncationTest {
+
+    private static final ProviderSettings SETTINGS =
+        new ProviderSettings("test", "测试", "key", "http://localhost/", "model", 100, 0.5);
+    
+    private final Recorder listener = new Recorder();
+    
+    @Test
+    void openAIStreamEndingWithDoneIsComplete() throws Exception {
+        String body = chunk("你好") + chunk("世界") + "data: [DONE]\n\n";
+        assertEquals("你好世界", new OpenAICompatibleProvider(SETTINGS).readResponse(response(body), true, listener));
+        assertEquals("你好世界", listener.completed);
+    }
+    
+    @Test
+    void openAIStreamWithFinishReasonButNoDoneIsComplete() throws Exception {
+        String body = chunk("你好")
+            + "data: {\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]}\n\n"
+            + "data: {\"choices\":[],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2}}\n\n";
+        assertEquals("你好", new OpenAICompatibleProvider(SETTINGS).readResponse(response(body), true, listener));
+    }
+    
+    @Test
+    void truncatedOpenAIStreamFails() {
+        String body = chunk("你好") + chunk("世");
+        assertThrows(IOException.class,
+            () -> new OpenAICompatibleProvider(SETTINGS).readResponse(response(body), true, listener));
+        assertNull(listener.completed);
+    }
+    
+    @Test
+    void claudeStreamEndingWithMessageStopIsComplete() throws Exception {
+        String body = claudeStart() + claudeDelta("你好") + "event: message_stop\ndata: {\"type\":\"message_stop\"}\n\n";
+        assertEquals("你好", new ClaudeProvider(SETTINGS, false).readResponse(response(body), true, listener));
+        assertEquals("你好", listener.completed);
+    }
+    
+    @Test
+    void truncatedClaudeStreamFails() {
+        String body = claudeStart() + claudeDelta("你好");
+        assertThrows(IOException.class,
+            () -> new ClaudeProvider(SETTINGS, false).readResponse(response(body), true, listener));
+        assertNull(listener.completed);
+    }
+    
+    private static String chunk(String text) {
+        return "data: {\"choices\":[{\"delta\":{\"content\":\"" + text + "\"}}]}\n\n";
+    }
+    
+    private static String claudeStart() {
+        return "event: message_start\ndata: {\"type\":\"message_start\",\"message\":{\"usage\":{\"input_tokens\":5}}}\n\n";
+    }
+    
+    private static String claudeDelta(String text) {
+        return "event: content_block_delta\ndata: {\"type\":\"content_block_delta\",\"index\":0,"
+            + "\"delta\":{\"type\":\"text_delta\",\"text\":\"" + text + "\"}}\n\n";
+    }
+    
+    private static Response response(String body) {
+        return new Response.Builder()
+            .request(new Request.Builder().url("http://localhost/").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(ResponseBody.create(body, MediaType.get("text/event-stream")))
+            .build();
+    }
+    
+    private static class Recorder implements StreamListener {
+        String completed;
+        
+        @Override
+        public void onDelta(String delta) {
+        }
+        
+        @Override
+        public void onComplete(String fullText) {
+            completed = fullText;
+        }
+    }
+}
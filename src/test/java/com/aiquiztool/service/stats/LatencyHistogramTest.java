@@ -0,0 +1,109 @@
+package com.aiquiztool.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LatencyHistogram的测试：桶边界连续、百分位误差不超过桶宽
+ * @author Tang En Dong
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsAreContiguousAndContainTheirValues() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 4095, 4096, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value, "桶下界大于值: " + value);
+            if (value < Long.MAX_VALUE / 2) {
+                assertTrue(LatencyHistogram.lowerBound(index + 1) > value, "值超出所在桶: " + value);
+            }
+        }
+        for (int index = 0; index < 400; index++) {
+            assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.lowerBound(index)));
+            assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.lowerBound(index + 1) - 1));
+        }
+    }
+    
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMean());
+    }
+    
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 8; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(0));
+        assertEquals(3, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(100));
+        assertEquals(7, histogram.getMax());
+        assertEquals(9, histogram.getCount());
+    }
+    
+    @Test
+    void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getMax());
+        assertTrue(histogram.percentile(100) <= 1000);
+        assertTrue(histogram.percentile(50) >= 1000 * 7 / 8);
+    }
+    
+    @Test
+    void percentilesStayWithinBucketError() {
+        Random random = new Random(3);
+        int n = 50_000;
+        long[] values = new long[n];
+        LatencyHistogram histogram = new LatencyHistogram();
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            // 对数正态分布，接近实际的接口延迟
+            values[i] = Math.round(Math.exp(6.5 + random.nextGaussian()));
+            histogram.record(values[i]);
+            sum += values[i];
+        }
+        Arrays.sort(values);
+        
+        for (double percentile : new double[] {1, 10, 50, 90, 95, 99, 99.9, 100}) {
+            long exact = values[(int) Math.max(Math.ceil(percentile / 100 * n), 1) - 1];
+            long estimate = histogram.percentile(percentile);
+            assertTrue(Math.abs(estimate - exact) <= exact / 8 + 1,
+                "p" + percentile + " 估计值" + estimate + " 精确值" + exact);
+        }
+        assertEquals(values[n - 1], histogram.getMax());
+        assertEquals((double) sum / n, histogram.getMean(), 1e-9);
+    }
+    
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i % 500 + offset);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(502, histogram.getMax());
+    }
+}